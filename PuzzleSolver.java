@@ -1,17 +1,30 @@
 package proyectoanalisis;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
 
 /**
  * PuzzleSolver.java
  *
  * Un solo archivo .java (un solo main) que incluye:
- * - Modelo: Piece, Board
- * - Generacion: PuzzleGenerator (incluye 3x3 "quemado")
+ * - Modelo: Piece, Board (+ PieceSet/CompactBoard compactos para los solvers)
+ * - Generacion: PuzzleGenerator (incluye 3x3 "quemado") + StreamingGenerator (tableros enormes)
+ * - Persistencia: PuzzleFile (binario mapeado, "write"/"solve" desde la linea de comandos)
  * - FitnessEvaluator
- * - Algoritmos: BruteForceSolver, AvanceRapido, GeneticSolver
- * - Medicion: tiempo, memoria, comparaciones y asignaciones
- * - Reporting genetico: cruces, mutaciones y top 3 al final
+ * - Algoritmos: BruteForceSolver, AvanceRapido (+ AvanceRapidoMRV), AvancePorFilas, GeneticSolver (+ IslandGeneticSolver multinucleo)
+ * - Portafolio: todos los algoritmos a la vez, gana la primera solucion completa
+ * - Medicion: tiempo (de reloj y de CPU), memoria (asignada, pico de heap, GC), comparaciones y asignaciones
+ * - Reporting genetico: cruces (OX o por bordes), mutaciones y top 3 al final
  *
  * Importante:
  * - La generacion de piezas NO se cuenta dentro de las mediciones.
@@ -30,11 +43,81 @@ public class PuzzleSolver {
     static final long MAX_MS_FAST       = 8000;
     static final long MAX_MS_GENETIC    = 12000;
 
+    // Portafolio (-Dpuzzle.portfolio=true): en vez de correr los algoritmos uno
+    // tras otro, cada uno con su timeout, se largan todos a la vez en hilos
+    // separados; gana la primera solucion completa (o el mejor fitness al
+    // vencer MAX_MS_PORTFOLIO) y los demas se cancelan
+    static final boolean PORTFOLIO_MODE = Boolean.getBoolean("puzzle.portfolio");
+    static final long MAX_MS_PORTFOLIO = MAX_MS_GENETIC;
+
+    // Descartar en O(n) puzzles sin solucion posible antes de correr los solvers
+    static final boolean PRECHECK_FEASIBILITY = true;
+
     // Imprimir todas las piezas solo en puzzles pequenos
     static final int PRINT_PIECES_MAX_SIZE = 5;
 
-    // Evitar StackOverflow por profundidad recursiva muy grande (p.ej. 100x100)
-    static final int MAX_CELLS_RECURSIVE = 5000; // 60x60=3600 OK, 100x100=10000 se omite
+    // Backtracking en paralelo, a pedido (-Dpuzzle.search.threads=4). Por
+    // defecto 1 hilo: contadores identicos a la version recursiva en cualquier
+    // maquina; con N hilos dependen del reparto entre los hilos
+    static final int SEARCH_THREADS = Integer.getInteger("puzzle.search.threads", 1);
+    static final int SEARCH_SPLIT_DEPTH = 2; // celdas fijadas por cada tarea
+    // Forward checking en fuerza bruta y avance rapido (descarta colocaciones
+    // que dejan al vecino derecho o de abajo sin ninguna pieza libre posible)
+    static final boolean SEARCH_FORWARD_CHECK = false;
+    // Cache de estados fallidos al inicio de cada fila (0 = desactivada)
+    static final int SEARCH_FAIL_CACHE_SLOTS = 0; // p.ej. 1 << 20
+    // Avance por filas: se corre ademas de los 3 algoritmos (apagado por
+    // defecto: agrega hasta MAX_MS_FAST por tamano). ROW_BUDGET acota cuantas
+    // filas enumeradas se guardan en memoria
+    static final boolean RUN_ROW_SOLVER = false;
+    static final long ROW_BUDGET = 2_000_000;
+    static final long ROW_BUDGET_BYTES = 256L << 20; // y ademas cuanta memoria ocupan
+    static final long ROW_PROFILE_MAX = 64; // perfiles con mas filas se recorren en streaming
+    // Avance rapido: expandir primero la celda con menos candidatos (MRV) en vez de por filas
+    static final boolean FAST_MRV = false;
+
+    // Genetico
+    static final int GA_GENERATIONS = 10;
+    static final int GA_THREADS = Runtime.getRuntime().availableProcessors();
+    // Modelo de islas (-Dpuzzle.ga.islands=4; 1 = una sola poblacion). Es una
+    // cantidad fija y no los nucleos: la misma semilla da el mismo resultado en
+    // cualquier maquina y "compare" puede comparar corridas entre maquinas
+    static final int GA_ISLANDS = Integer.getInteger("puzzle.ga.islands", 1);
+    // Producir los hijos de cada generacion por pares, cada par con su propio
+    // flujo aleatorio: el resultado depende solo de la semilla, con 1 hilo o con N
+    static final boolean GA_PARALLEL_CHILDREN = true;
+    static final int GA_MIGRATION_INTERVAL = 2; // generaciones entre migraciones
+    static final int GA_MIGRANTS = 2;           // mejores que viajan a la isla vecina
+    // Operador de cruce: ox | edge (-Dpuzzle.crossover=edge; "cruces" corre los dos)
+    static final String GA_CROSSOVER = System.getProperty("puzzle.crossover", "ox");
+    // Por presupuesto (-Dpuzzle.ga.budget=true): en vez de GA_GENERATIONS fijas se
+    // evoluciona hasta MAX_MS_GENETIC, hasta GA_TARGET_FITNESS (0 = el maximo) o
+    // hasta GA_STAGNATION_GENERATIONS generaciones sin mejorar el mejor
+    static final boolean GA_RUN_TO_BUDGET = Boolean.parseBoolean(System.getProperty("puzzle.ga.budget", "false"));
+    static final int GA_TARGET_FITNESS = 0;
+    static final int GA_STAGNATION_GENERATIONS = 200;
+    // Fraccion de la poblacion inicial armada con colocacion voraz por filas
+    // (-Dpuzzle.ga.greedy=0.25); el resto son permutaciones al azar
+    static final double GA_GREEDY_SEED = Double.parseDouble(System.getProperty("puzzle.ga.greedy", "0"));
+
+    // Contadores de comparaciones/asignaciones: off | exact | sampled
+    // (-Dpuzzle.counters=off para medir tiempos sin pagar el conteo)
+    static final String COUNTER_MODE = System.getProperty("puzzle.counters", "exact");
+
+    // Salida del genetico: off | summary | trace (-Dpuzzle.log=summary para no
+    // imprimir cruces ni mutaciones; off no imprime nada durante la corrida)
+    static final String LOG_LEVEL = System.getProperty("puzzle.log", "trace");
+
+    // Resultados: cada Metrics se agrega a <base>.csv y <base>.jsonl
+    // (-Dpuzzle.results=resultados/v2); "compare" los compara entre corridas
+    static final String RESULTS_BASE = System.getProperty("puzzle.results");
+    // Semilla de los puzzles del main (-Dpuzzle.seed=42) para que las corridas
+    // sean comparables; sin ella se generan al azar y se exporta seed=-1
+    static final Long PUZZLE_SEED = Long.getLong("puzzle.seed");
+    // compare: regresion si el tiempo o los nodos crecen mas que este % (o el
+    // 3er argumento); diferencias de tiempo menores a COMPARE_MIN_DELTA_MS no cuentan
+    static final double COMPARE_THRESHOLD_PCT = 10.0;
+    static final long COMPARE_MIN_DELTA_MS = 5;
 
     // ============================================================
     // ===================== PIECE (companeros) ====================
@@ -112,39 +195,178 @@ public class PuzzleSolver {
             return matches;
         }
 
+        // se arma todo el tablero y se escribe de una vez (antes era un printf por celda)
         public void print() {
+            String nl = System.lineSeparator();
+            StringBuilder sb = new StringBuilder(size * size * 28);
             for (int i = 0; i < size; i++) {
                 // Linea superior
                 for (int j = 0; j < size; j++) {
                     if (grid[i][j] != null) {
-                        System.out.printf("  %2d  ", grid[i][j].top);
+                        sb.append("  ");
+                        pad2(sb, grid[i][j].top);
+                        sb.append("  ");
                     } else {
-                        System.out.print("  -  ");
+                        sb.append("  -  ");
                     }
-                    System.out.print("  ");
+                    sb.append("  ");
                 }
-                System.out.println();
+                sb.append(nl);
 
                 // Linea media
                 for (int j = 0; j < size; j++) {
                     if (grid[i][j] != null) {
-                        System.out.printf("%2d[%2d]%2d", grid[i][j].left, grid[i][j].id, grid[i][j].right);
+                        pad2(sb, grid[i][j].left);
+                        sb.append('[');
+                        pad2(sb, grid[i][j].id);
+                        sb.append(']');
+                        pad2(sb, grid[i][j].right);
                     } else {
-                        System.out.print(" [  ] ");
+                        sb.append(" [  ] ");
                     }
                 }
-                System.out.println();
+                sb.append(nl);
 
                 // Linea inferior
                 for (int j = 0; j < size; j++) {
                     if (grid[i][j] != null) {
-                        System.out.printf("  %2d  ", grid[i][j].bottom);
+                        sb.append("  ");
+                        pad2(sb, grid[i][j].bottom);
+                        sb.append("  ");
                     } else {
-                        System.out.print("  -  ");
+                        sb.append("  -  ");
                     }
-                    System.out.print("  ");
+                    sb.append("  ");
                 }
-                System.out.println("\n");
+                sb.append("\n").append(nl);
+            }
+            System.out.print(sb);
+        }
+
+        // igual que %2d
+        private static void pad2(StringBuilder sb, int v) {
+            if (v >= 0 && v < 10) sb.append(' ');
+            sb.append(v);
+        }
+    }
+
+    // ============================================================
+    // ============ MODELO COMPACTO (struct-of-arrays) =============
+    // Mismos datos que Piece/Board pero en arreglos primitivos para los
+    // caminos calientes: sin punteros a objetos, sin boxing, sin basura.
+    // Las piezas se indexan por su posicion en la lista original.
+    // ============================================================
+    static final class PieceSet {
+        final int n;
+        final int maxValue;
+        final int[] id;
+        final int[] top;
+        final int[] right;
+        final int[] bottom;
+        final int[] left;
+
+        PieceSet(int[] id, int[] top, int[] right, int[] bottom, int[] left) {
+            this.n = id.length;
+            this.id = id;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.left = left;
+
+            int max = 0;
+            for (int i = 0; i < n; i++) {
+                max = Math.max(max, Math.max(Math.max(top[i], right[i]), Math.max(bottom[i], left[i])));
+            }
+            this.maxValue = max;
+        }
+
+        static PieceSet of(List<Piece> pieces) {
+            int n = pieces.size();
+            int[] id = new int[n];
+            int[] top = new int[n];
+            int[] right = new int[n];
+            int[] bottom = new int[n];
+            int[] left = new int[n];
+            for (int i = 0; i < n; i++) {
+                Piece p = pieces.get(i);
+                id[i] = p.id;
+                top[i] = p.top;
+                right[i] = p.right;
+                bottom[i] = p.bottom;
+                left[i] = p.left;
+            }
+            return new PieceSet(id, top, right, bottom, left);
+        }
+
+        // Solo para imprimir / reportar, nunca en el camino caliente
+        Piece toPiece(int i) {
+            return new Piece(id[i], top[i], right[i], bottom[i], left[i]);
+        }
+    }
+
+    static final class CompactBoard {
+        static final int EMPTY = -1;
+
+        final int size;
+        final int[] grid;  // indice de pieza por celda (fila * size + columna)
+        final long[] used; // bitmap de piezas usadas
+
+        CompactBoard(int size, int pieceCount) {
+            this.size = size;
+            this.grid = new int[size * size];
+            this.used = new long[(pieceCount + 63) >>> 6];
+            Arrays.fill(grid, EMPTY);
+        }
+
+        boolean isUsed(int piece) {
+            return (used[piece >>> 6] & (1L << piece)) != 0;
+        }
+
+        boolean canPlace(PieceSet set, int piece, int cell) {
+            int col = cell % size;
+            // Verificar arriba
+            if (cell >= size && grid[cell - size] != EMPTY) {
+                if (set.bottom[grid[cell - size]] != set.top[piece])
+                    return false;
+            }
+            // Verificar izquierda
+            if (col > 0 && grid[cell - 1] != EMPTY) {
+                if (set.right[grid[cell - 1]] != set.left[piece])
+                    return false;
+            }
+            return true;
+        }
+
+        void place(int piece, int cell) {
+            grid[cell] = piece;
+            used[piece >>> 6] |= 1L << piece;
+        }
+
+        // devuelve la pieza quitada
+        int remove(int cell) {
+            int piece = grid[cell];
+            grid[cell] = EMPTY;
+            used[piece >>> 6] &= ~(1L << piece);
+            return piece;
+        }
+
+        int countMatches(PieceSet set) {
+            int matches = 0;
+            for (int cell = 0; cell < grid.length; cell++) {
+                int p = grid[cell];
+                if (p == EMPTY) continue;
+                int col = cell % size;
+                if (col < size - 1 && grid[cell + 1] != EMPTY && set.right[p] == set.left[grid[cell + 1]]) matches++;
+                if (cell + size < grid.length && grid[cell + size] != EMPTY && set.bottom[p] == set.top[grid[cell + size]]) matches++;
+            }
+            return matches;
+        }
+
+        // Vuelca el resultado al Board de objetos (para imprimir)
+        void copyTo(Board board, PieceSet set) {
+            for (int cell = 0; cell < grid.length; cell++) {
+                int p = grid[cell];
+                board.grid[cell / size][cell % size] = (p == EMPTY) ? null : set.toPiece(p);
             }
         }
     }
@@ -224,6 +446,15 @@ public class PuzzleSolver {
 
         // Generar con solucion garantizada (companeros)
         public static List<Piece> generateWithSolution(int size, int maxValue) {
+            return generateWithSolution(size, maxValue, rand);
+        }
+
+        // Misma generacion pero reproducible (benchmarks, comparaciones entre corridas)
+        public static List<Piece> generateWithSolution(int size, int maxValue, long seed) {
+            return generateWithSolution(size, maxValue, new Random(seed));
+        }
+
+        private static List<Piece> generateWithSolution(int size, int maxValue, Random rand) {
             List<Piece> pieces = new ArrayList<>();
             int[][] topEdges = new int[size][size];
             int[][] rightEdges = new int[size][size];
@@ -259,7 +490,7 @@ public class PuzzleSolver {
                     positions.add(new int[] { i, j });
                 }
             }
-            Collections.shuffle(positions);
+            Collections.shuffle(positions, rand);
 
             for (int idx = 0; idx < positions.size(); idx++) {
                 int i = positions.get(idx)[0];
@@ -272,433 +503,3529 @@ public class PuzzleSolver {
     }
 
     // ============================================================
-    // ===================== FITNESS EVALUATOR =====================
+    // ================= STREAMING GENERATOR (semilla) =============
+    // Generador con solucion para tableros enormes. Cada borde es funcion
+    // pura de (semilla, posicion), asi no hay matrices de bordes ni estado
+    // compartido y cualquier rango de piezas se genera en paralelo.
+    // El orden "mezclado" sale de una permutacion Feistel sobre los indices:
+    // la pieza de salida k es la celda perm(k), sin lista de posiciones.
+    // Memoria O(1) propia: el consumidor (PieceSet, archivo) decide donde va.
     // ============================================================
-    static class FitnessEvaluator {
-        public static int evaluate(Board board) {
-            return board.countMatches();
+    static final class StreamingGenerator {
+        interface PieceSink {
+            // se llama en paralelo, con indices distintos
+            void accept(int index, int top, int right, int bottom, int left);
         }
 
-        public static int getMaxFitness(int size) {
-            return 2 * size * (size - 1);
+        private static final int FEISTEL_ROUNDS = 4;
+        private static final int PIECES_PER_TASK = 1 << 14;
+
+        final int size;
+        final int maxValue;
+        final long seed;
+        private final int n;
+        private final long edgeKey;
+        private final int halfBits;
+        private final long halfMask;
+        private final long[] roundKeys = new long[FEISTEL_ROUNDS];
+
+        StreamingGenerator(int size, int maxValue, long seed) {
+            if ((long) size * size > Integer.MAX_VALUE) throw new IllegalArgumentException("size demasiado grande: " + size);
+            this.size = size;
+            this.maxValue = maxValue;
+            this.seed = seed;
+            this.n = size * size;
+            this.edgeKey = mix64(seed);
+
+            int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, n - 1));
+            this.halfBits = Math.max(1, (bits + 1) / 2);
+            this.halfMask = (1L << halfBits) - 1;
+            for (int r = 0; r < FEISTEL_ROUNDS; r++) roundKeys[r] = mix64(seed + 0x9E3779B97F4A7C15L * (r + 1));
         }
-    }
 
-    // ============================================================
-    // ===================== METRICS / UTIL ========================
-    // ============================================================
-    static class Metrics {
-        long timeMs;
-        long memoryBytes;
-        long comparisons;
-        long assignments;
-        boolean solved;
-        int bestFitness;
-        String note;
-    }
+        // ---- bordes: horizontal(i, j) = borde izquierdo de (i, j), j en [0, size] ----
+        private int horizontal(int i, int j) {
+            return edge(((long) i << 31) | j);
+        }
 
-    static long usedMemoryBytes() {
-        Runtime rt = Runtime.getRuntime();
-        return rt.totalMemory() - rt.freeMemory();
-    }
+        // vertical(i, j) = borde superior de (i, j), i en [0, size]
+        private int vertical(int i, int j) {
+            return edge((1L << 62) | ((long) i << 31) | j);
+        }
 
-    // ============================================================
-    // ===================== BRUTE FORCE SOLVER ====================
-    // (codigo de companeros + timeout)
-    // ============================================================
-    static class BruteForceSolver {
-        private long comparaciones = 0;
-        private long asignaciones = 0;
+        private int edge(long key) {
+            long h = mix64(key + edgeKey);
+            return (int) (((h >>> 32) * (maxValue + 1L)) >>> 32);
+        }
 
-        private final Board board;
-        private final List<Piece> pieces;
-        private final Set<Integer> piezasUsadas;
+        // ---- permutacion de indices (Feistel + cycle walking) ----
+        int cellOf(int index) {
+            long x = index;
+            do {
+                x = feistel(x);
+            } while (x >= n);
+            return (int) x;
+        }
 
-        private final long deadlineNano;
+        private long feistel(long x) {
+            long l = x >>> halfBits;
+            long r = x & halfMask;
+            for (int round = 0; round < FEISTEL_ROUNDS; round++) {
+                long f = mix64(r ^ roundKeys[round]) & halfMask;
+                long next = l ^ f;
+                l = r;
+                r = next;
+            }
+            return (l << halfBits) | r;
+        }
 
-        public BruteForceSolver(Board board, List<Piece> pieces, long maxMs) {
-            this.board = board;
-            this.pieces = pieces;
-            this.piezasUsadas = new HashSet<>();
-            this.asignaciones += 3;
-            this.deadlineNano = System.nanoTime() + (maxMs * 1_000_000L);
+        // Piezas de salida [from, to) (id = indice de salida), en paralelo
+        void generate(int from, int to, PieceSink sink) {
+            ForkJoinPool.commonPool().invoke(new Tramo(from, to, sink));
         }
 
-        public boolean solve() {
-            return solucionarRecursivo(0, 0);
+        void generateAll(PieceSink sink) {
+            generate(0, n, sink);
         }
 
-        private boolean timedOut() {
-            return System.nanoTime() > deadlineNano;
+        PieceSet toPieceSet() {
+            int[] id = new int[n];
+            int[] top = new int[n];
+            int[] right = new int[n];
+            int[] bottom = new int[n];
+            int[] left = new int[n];
+            generateAll((k, t, r, b, l) -> {
+                id[k] = k;
+                top[k] = t;
+                right[k] = r;
+                bottom[k] = b;
+                left[k] = l;
+            });
+            return new PieceSet(id, top, right, bottom, left);
         }
 
-        private boolean solucionarRecursivo(int fila, int columna) {
-            if (timedOut()) return false;
+        private void emit(int k, PieceSink sink) {
+            int cell = cellOf(k);
+            int i = cell / size;
+            int j = cell % size;
+            sink.accept(k, vertical(i, j), horizontal(i, j + 1), vertical(i + 1, j), horizontal(i, j));
+        }
 
-            comparaciones++;
-            if (fila == board.size) {
-                return true;
-            }
+        @SuppressWarnings("serial") // las tareas nunca se serializan
+        private final class Tramo extends RecursiveAction {
+            private final int from, to;
+            private final PieceSink sink;
 
-            int siguienteFila;
-            int siguienteColumna;
+            Tramo(int from, int to, PieceSink sink) {
+                this.from = from;
+                this.to = to;
+                this.sink = sink;
+            }
 
-            comparaciones++;
-            if (columna == board.size - 1) {
-                siguienteFila = fila + 1;
-                siguienteColumna = 0;
-                asignaciones += 2;
-            } else {
-                siguienteFila = fila;
-                siguienteColumna = columna + 1;
-                asignaciones += 2;
+            @Override
+            protected void compute() {
+                if (to - from <= PIECES_PER_TASK) {
+                    for (int k = from; k < to; k++) emit(k, sink);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tramo(from, mid, sink), new Tramo(mid, to, sink));
             }
+        }
+    }
 
-            for (Piece p : pieces) {
-                asignaciones++;
-                comparaciones++;
+    // ============================================================
+    // ===================== PUZZLE FILE (binario) =================
+    // Formato para generar una vez y compartir puzzles enormes entre corridas.
+    // Se lee y escribe con FileChannel.map (por ventanas, asi pasa de 2 GB) y
+    // se carga directo a un PieceSet: no se crean objetos Piece ni se parsea
+    // texto.
+    //
+    // Cabecera (32 bytes, little endian):
+    //   0 magic "PZL1" | 4 version | 8 size | 12 maxValue | 16 seed (long)
+    //   24 width (bytes por borde: 1, 2 o 4) | 28 flags (1 = ids explicitos)
+    // Cuerpo: n registros top,right,bottom,left de 'width' bytes sin signo,
+    // y si flags & 1, n ids int. Sin el flag el id de cada pieza es su indice.
+    // ============================================================
+    static final class PuzzleFile {
+        static final int MAGIC = 0x314C5A50; // "PZL1" en little endian
+        static final int VERSION = 1;
+        static final int HEADER_BYTES = 32;
+        static final int FLAG_IDS = 1;
 
-                comparaciones++;
-                if (!piezasUsadas.contains(p.id)) {
+        private static final long WINDOW_BYTES = 1L << 28; // multiplo de todo tamano de registro
 
-                    comparaciones++;
-                    if (board.canPlace(p, fila, columna)) {
-                        board.place(p, fila, columna);
-                        piezasUsadas.add(p.id);
-                        asignaciones += 2;
+        final int size;
+        final int maxValue;
+        final long seed;
+        final PieceSet set;
 
-                        comparaciones++;
-                        if (solucionarRecursivo(siguienteFila, siguienteColumna)) {
-                            return true;
-                        }
+        PuzzleFile(int size, int maxValue, long seed, PieceSet set) {
+            this.size = size;
+            this.maxValue = maxValue;
+            this.seed = seed;
+            this.set = set;
+        }
 
-                        board.remove(fila, columna);
-                        piezasUsadas.remove(p.id);
-                        asignaciones += 2;
+        static void write(java.nio.file.Path path, PuzzleFile puzzle) throws java.io.IOException {
+            PieceSet set = puzzle.set;
+            int n = set.n;
+            // antes de abrir (y truncar) el archivo: read() rechazaria el resultado
+            if ((long) puzzle.size * puzzle.size != n) {
+                throw new IllegalArgumentException("size " + puzzle.size + " no coincide con " + n + " piezas");
+            }
+            int maxValue = Math.max(puzzle.maxValue, set.maxValue); // read() valida contra este
+            int width = widthFor(maxValue);
+            boolean ids = !identityIds(set);
+            long edgesBytes = (long) n * 4 * width;
+            long total = HEADER_BYTES + edgesBytes + (ids ? 4L * n : 0);
+
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING,
+                    java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+                java.nio.MappedByteBuffer head = map(ch, java.nio.channels.FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                head.putInt(MAGIC).putInt(VERSION).putInt(puzzle.size).putInt(maxValue)
+                        .putLong(puzzle.seed).putInt(width).putInt(ids ? FLAG_IDS : 0);
+
+                int perWindow = (int) (WINDOW_BYTES / (4L * width));
+                for (int from = 0; from < n; from += perWindow) {
+                    int to = (int) Math.min(n, (long) from + perWindow);
+                    java.nio.MappedByteBuffer buf = map(ch, java.nio.channels.FileChannel.MapMode.READ_WRITE,
+                            HEADER_BYTES + (long) from * 4 * width, (long) (to - from) * 4 * width);
+                    for (int i = from; i < to; i++) {
+                        putEdge(buf, width, set.top[i]);
+                        putEdge(buf, width, set.right[i]);
+                        putEdge(buf, width, set.bottom[i]);
+                        putEdge(buf, width, set.left[i]);
                     }
                 }
 
-                if (timedOut()) return false;
+                if (ids) {
+                    int idsPerWindow = (int) (WINDOW_BYTES / 4);
+                    for (int from = 0; from < n; from += idsPerWindow) {
+                        int to = (int) Math.min(n, (long) from + idsPerWindow);
+                        java.nio.MappedByteBuffer buf = map(ch, java.nio.channels.FileChannel.MapMode.READ_WRITE,
+                                HEADER_BYTES + edgesBytes + 4L * from, 4L * (to - from));
+                        buf.asIntBuffer().put(set.id, from, to - from);
+                    }
+                }
+                if (ch.size() != total) throw new java.io.IOException("Escritura incompleta de " + path);
             }
+        }
 
-            return false;
+        // Escribe directo desde el generador, ventana por ventana: nunca hay
+        // un PieceSet completo en memoria
+        static void write(java.nio.file.Path path, StreamingGenerator gen) throws java.io.IOException {
+            int n = gen.size * gen.size;
+            int width = widthFor(gen.maxValue);
+            int record = 4 * width;
+
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING,
+                    java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+                java.nio.MappedByteBuffer head = map(ch, java.nio.channels.FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                head.putInt(MAGIC).putInt(VERSION).putInt(gen.size).putInt(gen.maxValue)
+                        .putLong(gen.seed).putInt(width).putInt(0);
+
+                int perWindow = (int) (WINDOW_BYTES / record);
+                for (int from = 0; from < n; from += perWindow) {
+                    final int base = from;
+                    int to = (int) Math.min(n, (long) from + perWindow);
+                    java.nio.MappedByteBuffer buf = map(ch, java.nio.channels.FileChannel.MapMode.READ_WRITE,
+                            HEADER_BYTES + (long) from * record, (long) (to - from) * record);
+                    gen.generate(from, to, (k, t, r, b, l) -> {
+                        int at = (k - base) * record;
+                        putEdge(buf, width, at, t);
+                        putEdge(buf, width, at + width, r);
+                        putEdge(buf, width, at + 2 * width, b);
+                        putEdge(buf, width, at + 3 * width, l);
+                    });
+                }
+            }
         }
 
-        public long getComparaciones() { return comparaciones; }
-        public long getAsignaciones() { return asignaciones; }
-        public boolean isTimedOut() { return timedOut(); }
-    }
+        static PuzzleFile read(java.nio.file.Path path) throws java.io.IOException {
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                    java.nio.file.StandardOpenOption.READ)) {
+                if (ch.size() < HEADER_BYTES) throw new java.io.IOException(path + ": archivo demasiado corto");
+                java.nio.MappedByteBuffer head = map(ch, java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (head.getInt() != MAGIC) throw new java.io.IOException(path + ": no es un puzzle PZL1");
+                int version = head.getInt();
+                if (version != VERSION) throw new java.io.IOException(path + ": version no soportada " + version);
+                int size = head.getInt();
+                int maxValue = head.getInt();
+                long seed = head.getLong();
+                int width = head.getInt();
+                int flags = head.getInt();
+                if (width != 1 && width != 2 && width != 4) throw new java.io.IOException(path + ": ancho invalido " + width);
+                if (maxValue < 0) throw new java.io.IOException(path + ": maxValue invalido " + maxValue);
+
+                long cells = (long) size * size;
+                if (size <= 0 || cells > Integer.MAX_VALUE) throw new java.io.IOException(path + ": tamano invalido " + size);
+                int n = (int) cells;
+                long edgesBytes = (long) n * 4 * width;
+                boolean ids = (flags & FLAG_IDS) != 0;
+                if (ch.size() != HEADER_BYTES + edgesBytes + (ids ? 4L * n : 0)) {
+                    throw new java.io.IOException(path + ": largo no coincide con la cabecera");
+                }
 
-    // ============================================================
-    // ===================== AVANCE RAPIDO =========================
-    // (codigo de companeros + timeout)
-    // ============================================================
-    static class AvanceRapido {
-        private long comparaciones = 0;
-        private long asignaciones = 0;
+                int[] id = new int[n];
+                int[] top = new int[n];
+                int[] right = new int[n];
+                int[] bottom = new int[n];
+                int[] left = new int[n];
+
+                int perWindow = (int) (WINDOW_BYTES / (4L * width));
+                for (int from = 0; from < n; from += perWindow) {
+                    int to = (int) Math.min(n, (long) from + perWindow);
+                    java.nio.MappedByteBuffer buf = map(ch, java.nio.channels.FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + (long) from * 4 * width, (long) (to - from) * 4 * width);
+                    for (int i = from; i < to; i++) {
+                        top[i] = getEdge(buf, width);
+                        right[i] = getEdge(buf, width);
+                        bottom[i] = getEdge(buf, width);
+                        left[i] = getEdge(buf, width);
+                        // con ancho 4 un archivo corrupto puede traer negativos: serian
+                        // indices invalidos en PieceSet y CandidateIndex
+                        if (outOfRange(top[i], maxValue) || outOfRange(right[i], maxValue)
+                                || outOfRange(bottom[i], maxValue) || outOfRange(left[i], maxValue)) {
+                            throw new java.io.IOException(path + ": pieza " + i + " con borde fuera de 0.." + maxValue);
+                        }
+                    }
+                }
 
-        private final Board board;
-        private final List<Piece> pieces;
-        private final Set<Integer> piezasUsadas;
-        private final Map<Integer, List<Piece>> piezasPorIzquierda = new HashMap<>();
-        private final Map<Integer, List<Piece>> piezasPorArriba = new HashMap<>();
+                if (ids) {
+                    int idsPerWindow = (int) (WINDOW_BYTES / 4);
+                    for (int from = 0; from < n; from += idsPerWindow) {
+                        int to = (int) Math.min(n, (long) from + idsPerWindow);
+                        java.nio.MappedByteBuffer buf = map(ch, java.nio.channels.FileChannel.MapMode.READ_ONLY,
+                                HEADER_BYTES + edgesBytes + 4L * from, 4L * (to - from));
+                        buf.asIntBuffer().get(id, from, to - from);
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) id[i] = i;
+                }
 
-        private final long deadlineNano;
+                return new PuzzleFile(size, maxValue, seed, new PieceSet(id, top, right, bottom, left));
+            }
+        }
 
-        public AvanceRapido(Board board, List<Piece> pieces, long maxMs) {
-            this.board = board;
-            this.pieces = pieces;
-            this.piezasUsadas = new HashSet<>();
-            this.deadlineNano = System.nanoTime() + (maxMs * 1_000_000L);
+        private static boolean outOfRange(int edge, int maxValue) {
+            return edge < 0 || edge > maxValue;
+        }
+
+        private static java.nio.MappedByteBuffer map(java.nio.channels.FileChannel ch,
+                                                     java.nio.channels.FileChannel.MapMode mode,
+                                                     long position, long bytes) throws java.io.IOException {
+            java.nio.MappedByteBuffer buf = ch.map(mode, position, bytes);
+            buf.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            return buf;
+        }
 
-            for (Piece p : pieces) {
-                piezasPorArriba.putIfAbsent(p.top, new ArrayList<>());
-                piezasPorArriba.get(p.top).add(p);
+        static int widthFor(int maxValue) {
+            if (maxValue <= 0xFF) return 1;
+            if (maxValue <= 0xFFFF) return 2;
+            return 4;
+        }
 
-                piezasPorIzquierda.putIfAbsent(p.left, new ArrayList<>());
-                piezasPorIzquierda.get(p.left).add(p);
+        private static boolean identityIds(PieceSet set) {
+            for (int i = 0; i < set.n; i++) {
+                if (set.id[i] != i) return false;
             }
+            return true;
+        }
 
-            this.asignaciones += 3;
+        private static void putEdge(java.nio.ByteBuffer buf, int width, int value) {
+            if (width == 1) buf.put((byte) value);
+            else if (width == 2) buf.putShort((short) value);
+            else buf.putInt(value);
         }
 
-        private boolean timedOut() {
-            return System.nanoTime() > deadlineNano;
+        // version absoluta: segura desde varios hilos en posiciones distintas
+        private static void putEdge(java.nio.ByteBuffer buf, int width, int at, int value) {
+            if (width == 1) buf.put(at, (byte) value);
+            else if (width == 2) buf.putShort(at, (short) value);
+            else buf.putInt(at, value);
         }
 
-        public boolean solve() {
-            return solucionarAvanceRapido(0, 0);
+        private static int getEdge(java.nio.ByteBuffer buf, int width) {
+            if (width == 1) return buf.get() & 0xFF;
+            if (width == 2) return buf.getShort() & 0xFFFF;
+            return buf.getInt();
         }
+    }
 
-        private boolean solucionarAvanceRapido(int fila, int columna) {
-            if (timedOut()) return false;
+    // ============================================================
+    // ===================== FITNESS EVALUATOR =====================
+    // ============================================================
+    static class FitnessEvaluator {
+        public static int evaluate(Board board) {
+            return board.countMatches();
+        }
 
-            comparaciones++;
-            if (fila == board.size) {
-                return true;
-            }
+        public static int getMaxFitness(int size) {
+            return 2 * size * (size - 1);
+        }
+    }
 
-            int siguienteFila;
-            int siguienteColumna;
+    // ============================================================
+    // ================ PRECHEQUEO DE FACTIBILIDAD =================
+    // Condicion necesaria, O(n): en una solucion cada right interno se empareja
+    // con un left igual, y solo las `size` piezas del borde derecho quedan sin
+    // pareja. Entonces sum_v max(0, #right(v) - #left(v)) <= size, y lo mismo
+    // con bottom vs top. Si no se cumple, ningun solver puede completar el
+    // tablero y no vale la pena esperar sus timeouts.
+    // ============================================================
+    static final class FeasibilityCheck {
+        final boolean feasible;
+        final int horizontalExcess; // rights sin left igual (permitido: size)
+        final int verticalExcess;   // bottoms sin top igual (permitido: size)
+        final String detail;
+
+        private FeasibilityCheck(boolean feasible, int horizontalExcess, int verticalExcess, String detail) {
+            this.feasible = feasible;
+            this.horizontalExcess = horizontalExcess;
+            this.verticalExcess = verticalExcess;
+            this.detail = detail;
+        }
 
-            comparaciones++;
-            if (columna == board.size - 1) {
-                siguienteFila = fila + 1;
-                siguienteColumna = 0;
-                asignaciones += 2;
-            } else {
-                siguienteFila = fila;
-                siguienteColumna = columna + 1;
-                asignaciones += 2;
+        static FeasibilityCheck of(int size, PieceSet set) {
+            if (set.n != size * size) {
+                return new FeasibilityCheck(false, 0, 0, "hay " + set.n + " piezas para " + (size * size) + " celdas");
             }
-
-            List<Piece> candidatos = pieces;
-            if (columna > 0 && board.grid[fila][columna - 1] != null) {
-                int valorBuscado = board.grid[fila][columna - 1].right;
-                candidatos = piezasPorIzquierda.getOrDefault(valorBuscado, new ArrayList<>());
-            } else if (fila > 0 && board.grid[fila - 1][columna] != null) {
-                int valorBuscado = board.grid[fila - 1][columna].bottom;
-                candidatos = piezasPorArriba.getOrDefault(valorBuscado, new ArrayList<>());
+            int values = set.maxValue + 1;
+            int[] right = new int[values];
+            int[] left = new int[values];
+            int[] bottom = new int[values];
+            int[] top = new int[values];
+            for (int i = 0; i < set.n; i++) {
+                right[set.right[i]]++;
+                left[set.left[i]]++;
+                bottom[set.bottom[i]]++;
+                top[set.top[i]]++;
             }
 
-            for (Piece p : candidatos) {
-                comparaciones += 2;
-                if (!piezasUsadas.contains(p.id) && board.canPlace(p, fila, columna)) {
-                    board.place(p, fila, columna);
-                    piezasUsadas.add(p.id);
-                    asignaciones += 2;
-
-                    comparaciones++;
-                    if (solucionarAvanceRapido(siguienteFila, siguienteColumna)) {
-                        return true;
-                    }
-
-                    board.remove(fila, columna);
-                    piezasUsadas.remove(p.id);
-                    asignaciones += 2;
-                }
+            int horizontal = excess(right, left);
+            int vertical = excess(bottom, top);
+            boolean ok = horizontal <= size && vertical <= size;
 
-                if (timedOut()) return false;
+            StringBuilder sb = new StringBuilder();
+            if (horizontal > size) {
+                sb.append("right/left: ").append(horizontal).append(" sin pareja (max ").append(size).append(") ");
+                describe(sb, right, left, "right", "left");
+            }
+            if (vertical > size) {
+                if (sb.length() > 0) sb.append("; ");
+                sb.append("bottom/top: ").append(vertical).append(" sin pareja (max ").append(size).append(") ");
+                describe(sb, bottom, top, "bottom", "top");
             }
+            return new FeasibilityCheck(ok, horizontal, vertical, sb.toString());
+        }
 
-            return false;
+        private static int excess(int[] a, int[] b) {
+            int total = 0;
+            for (int v = 0; v < a.length; v++) total += Math.max(0, a[v] - b[v]);
+            return total;
         }
 
-        public long getComparaciones() { return comparaciones; }
-        public long getAsignaciones() { return asignaciones; }
-        public boolean isTimedOut() { return timedOut(); }
+        // valores desbalanceados, p.ej. "[3: right 9 / left 5, ...]"
+        private static void describe(StringBuilder sb, int[] a, int[] b, String nameA, String nameB) {
+            sb.append('[');
+            boolean first = true;
+            for (int v = 0; v < a.length; v++) {
+                if (a[v] == b[v]) continue;
+                if (!first) sb.append(", ");
+                sb.append(v).append(": ").append(nameA).append(' ').append(a[v])
+                        .append(" / ").append(nameB).append(' ').append(b[v]);
+                first = false;
+            }
+            sb.append(']');
+        }
     }
 
-// ============================================================
-// ===================== GENETIC SOLVER (persona 3) ============
-// ============================================================
-static class GeneticSolver {
-
-    static class Individual {
-        int[] perm;   // permutacion de indices de piezas (0..n-1)
-        int fitness;
-        long hash;
+    // ============================================================
+    // ===================== METRICS / UTIL ========================
+    // ============================================================
+    static class Metrics {
+        String algorithm;     // se completan al exportar (ver tag)
+        int size;
+        int maxValue;
+        long seed = -1;       // -1: puzzle fijo o generado al azar
+        long timeMs;
+        long cpuTimeMs;       // CPU del hilo principal + workers de los pools
+        long allocatedBytes;  // asignado por el hilo principal + workers de los pools
+        long peakHeapBytes;   // pico de heap durante la corrida
+        long gcCount;
+        long gcTimeMs;
+        long comparisons;
+        long assignments;
+        boolean solved;
+        int bestFitness;
+        String note;
+        FitnessTrace trace;   // genetico: mejor fitness en el tiempo (null en los demas)
     }
 
-    private final int size;
-    private final int n;
-    private final List<Piece> pieces;
-    private final int maxFitness;
+    // Mejor fitness en el tiempo de una corrida del genetico: un punto
+    // (ms, fitness) cada vez que mejora el mejor, mas el motivo de parada.
+    static final class FitnessTrace {
+        private final long startNano;
+        private long[] ms = new long[16];
+        private int[] fitness = new int[16];
+        private int length;
+        private int generations;
+        private int lastImprovement;
+        private String stop = "generaciones";
+
+        FitnessTrace(long startNano) {
+            this.startNano = startNano;
+        }
 
-    private final int populationSize;
-    private final int childrenCount;
+        // se llama al terminar cada generacion (0 = poblacion inicial)
+        void record(int gen, int best) {
+            generations = gen;
+            if (length > 0 && best <= fitness[length - 1]) return;
+            if (length == ms.length) {
+                ms = Arrays.copyOf(ms, length * 2);
+                fitness = Arrays.copyOf(fitness, length * 2);
+            }
+            ms[length] = (System.nanoTime() - startNano) / 1_000_000L;
+            fitness[length] = best;
+            length++;
+            lastImprovement = gen;
+        }
 
-    private final Random rand;
-    private final long deadlineNano;
+        boolean stagnated(int window) {
+            return generations - lastImprovement >= window;
+        }
 
-    // contadores
-    private long comparisons = 0;
-    private long assignments = 0;
+        void stoppedBy(String reason) { this.stop = reason; }
 
-    // imprimir modo compacto para tamanos grandes
-    private final boolean compact;
+        int getGenerations() { return generations; }
+        String getStop() { return stop; }
 
-    public GeneticSolver(int size, List<Piece> pieces, int populationSize, int childrenCount, long maxMs) {
-        this.size = size;
-        this.n = size * size;
-        this.pieces = pieces;
-        this.maxFitness = FitnessEvaluator.getMaxFitness(size);
-        this.populationSize = populationSize;
-        this.childrenCount = childrenCount;
-        this.rand = new Random(999 + size + n);
-        this.deadlineNano = System.nanoTime() + (maxMs * 1_000_000L);
-        this.compact = (size > 5);
+        // "ms:fitness" de cada mejora; con muchas se muestran las primeras y las ultimas
+        String points(int limit) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                if (length > limit && i == limit / 2) {
+                    sb.append(" ...");
+                    i = length - limit / 2;
+                }
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(ms[i]).append(':').append(fitness[i]);
+            }
+            return sb.toString();
+        }
     }
 
-    private boolean timedOut() {
-        return System.nanoTime() > deadlineNano;
+    static long deadlineFor(long maxMs) {
+        return System.nanoTime() + (maxMs * 1_000_000L);
     }
 
-    public Metrics solveAndReport() {
-        Metrics m = new Metrics();
+    // finalizador de splitmix64: mezcla barata y biyectiva de 64 bits
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
-        long memBefore = usedMemoryBytes();
-        long start = System.nanoTime();
+    // Medicion de memoria de una corrida. totalMemory - freeMemory dependia de
+    // cuando pasaba el GC; aca se usa lo que cada hilo asigno (ThreadMXBean),
+    // el pico de uso de los pools de heap y los GCs ocurridos en el intervalo.
+    // Los pools de los solvers se crean con newPool: sus workers se registran
+    // y lo que asignan se suma, aunque el hilo ya haya terminado.
+    static final class MemoryMeter {
+        private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+        private static final java.lang.management.ThreadMXBean CPU = cpuBean();
+
+        private static final Object lock = new Object();
+        private static final Set<Thread> workers = new HashSet<>();
+        private static long finishedWorkerBytes = 0;
+        private static long finishedWorkerCpuNs = 0;
+
+        private final long mainStart;
+        private final long workersStart;
+        private final long mainCpuStart;
+        private final long workersCpuStart;
+        private final long gcCountStart;
+        private final long gcTimeStart;
+
+        private MemoryMeter() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) pool.resetPeakUsage();
+            }
+            this.gcCountStart = gcCount();
+            this.gcTimeStart = gcTimeMs();
+            this.workersStart = workerBytes();
+            this.workersCpuStart = workerCpuNs();
+            this.mainCpuStart = cpuOf(Thread.currentThread().getId());
+            this.mainStart = threadAllocatedBytes();
+        }
 
-        // 1) poblacion inicial (sin repetidos)
-        List<Individual> population = createInitialPopulation();
-        for (Individual ind : population) {
-            ind.fitness = fitnessOf(ind.perm);
-            assignments++;
+        static MemoryMeter start() {
+            return new MemoryMeter();
         }
-        sortByFitnessDesc(population);
 
-        // 2) 10 generaciones
-        for (int gen = 1; gen <= 10; gen++) {
-            if (timedOut()) break;
+        void stop(Metrics m) {
+            long main = threadAllocatedBytes() - mainStart;
+            m.allocatedBytes = main + (workerBytes() - workersStart);
+            long cpuNs = (cpuOf(Thread.currentThread().getId()) - mainCpuStart) + (workerCpuNs() - workersCpuStart);
+            m.cpuTimeMs = cpuNs / 1_000_000L;
+            m.peakHeapBytes = peakHeapBytes();
+            m.gcCount = gcCount() - gcCountStart;
+            m.gcTimeMs = gcTimeMs() - gcTimeStart;
+        }
 
-            System.out.println("\n[GENETIC] ===== Generacion " + gen + " =====");
-            System.out.println("[GENETIC] Mejor fitness actual: " + population.get(0).fitness + " / " + maxFitness);
+        static ForkJoinPool newPool(int parallelism) {
+            return new ForkJoinPool(parallelism, CountingWorker::new, null, false);
+        }
 
-            List<Individual> children = new ArrayList<>(childrenCount);
+        private static final class CountingWorker extends ForkJoinWorkerThread {
+            CountingWorker(ForkJoinPool pool) {
+                super(pool);
+            }
 
-            // evitar cromosomas repetidos en la misma generacion
-            Set<Long> seen = new HashSet<>(populationSize + childrenCount * 2);
-            for (Individual p : population) seen.add(p.hash);
+            @Override
+            protected void onStart() {
+                super.onStart();
+                synchronized (lock) {
+                    workers.add(this);
+                }
+            }
 
-            int produced = 0;
-            int crossPrintLimit = compact ? 5 : 15;
-            int printed = 0;
+            @Override
+            protected void onTermination(Throwable exception) {
+                synchronized (lock) {
+                    workers.remove(this);
+                    finishedWorkerBytes += Math.max(0, allocatedBy(getId()));
+                    finishedWorkerCpuNs += cpuOf(getId());
+                }
+                super.onTermination(exception);
+            }
+        }
 
-            while (produced < childrenCount && !timedOut()) {
-                Individual parent1 = tournamentSelect(population, 3);
-                Individual parent2 = tournamentSelect(population, 3);
+        private static long workerBytes() {
+            synchronized (lock) {
+                long total = finishedWorkerBytes;
+                for (Thread t : workers) total += Math.max(0, allocatedBy(t.getId()));
+                return total;
+            }
+        }
 
-                Individual[] kids = orderCrossoverOX(parent1, parent2);
+        private static long workerCpuNs() {
+            synchronized (lock) {
+                long total = finishedWorkerCpuNs;
+                for (Thread t : workers) total += cpuOf(t.getId());
+                return total;
+            }
+        }
 
-                // evaluar antes de imprimir (asi NO sale -1)
-                kids[0].fitness = fitnessOf(kids[0].perm);
-                kids[1].fitness = fitnessOf(kids[1].perm);
-                assignments += 2;
+        private static long cpuOf(long threadId) {
+            return CPU != null ? Math.max(0, CPU.getThreadCpuTime(threadId)) : 0;
+        }
 
-                // mejora local ligera (hace al genetico MUCHO mas estable en 3x3 y 5x5)
-                kids[0] = localImprove(kids[0]);
-                kids[1] = localImprove(kids[1]);
+        // suma de los picos de cada pool de heap (cota superior del pico total)
+        private static long peakHeapBytes() {
+            long total = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) total += pool.getPeakUsage().getUsed();
+            }
+            return total;
+        }
 
-                // mutacion + salida de duplicados
-                kids[0] = resolveDuplicateWithMutationIfNeeded(kids[0], seen);
-                kids[1] = resolveDuplicateWithMutationIfNeeded(kids[1], seen);
+        static long threadAllocatedBytes() {
+            return allocatedBy(Thread.currentThread().getId());
+        }
 
-                if (printed < crossPrintLimit) {
-                    printCross(parent1, parent2, kids[0], kids[1]);
-                    printed++;
-                    if (printed == crossPrintLimit) {
-                        System.out.println("[CRUCE] (se omiten mas cruces en esta generacion para no saturar la salida)");
-                    }
-                }
+        private static long allocatedBy(long threadId) {
+            return THREADS != null ? THREADS.getThreadAllocatedBytes(threadId) : 0;
+        }
 
-                children.add(kids[0]);
-                children.add(kids[1]);
-                produced += 2;
+        static long gcCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
             }
+            return count;
+        }
 
-            // reemplazo: padres + hijos, quedan los mejores populationSize
-            List<Individual> combined = new ArrayList<>(populationSize + children.size());
-            combined.addAll(population);
-            combined.addAll(children);
-
-            sortByFitnessDesc(combined);
-            population = new ArrayList<>(combined.subList(0, Math.min(populationSize, combined.size())));
-
-            comparisons++;
-            if (population.get(0).fitness == maxFitness) {
-                System.out.println("[GENETIC] Solucion perfecta encontrada (fitness maximo).");
-                break;
+        static long gcTimeMs() {
+            long time = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                time += Math.max(0, gc.getCollectionTime());
             }
+            return time;
         }
 
-        sortByFitnessDesc(population);
-        System.out.println("\n[GENETIC] ===== TOP 3 Poblaciones Finales =====");
-        for (int i = 0; i < Math.min(3, population.size()); i++) {
-            System.out.println((i + 1) + ") Fitness = " + population.get(i).fitness + " / " + maxFitness
-                    + "  Cromosoma=" + chromosomeToString(population.get(i).perm));
+        private static com.sun.management.ThreadMXBean threadBean() {
+            java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+            if (!(mx instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) mx;
+            if (!bean.isThreadAllocatedMemorySupported()) return null;
+            if (!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
         }
 
-        // tablero del mejor
-        Board bestBoard = buildBoardFromPerm(population.get(0).perm);
+        private static java.lang.management.ThreadMXBean cpuBean() {
+            java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+            if (!mx.isThreadCpuTimeSupported()) return null;
+            if (!mx.isThreadCpuTimeEnabled()) mx.setThreadCpuTimeEnabled(true);
+            return mx;
+        }
+    }
 
-        long end = System.nanoTime();
-        long memAfter = usedMemoryBytes();
+    // Modo de los contadores. Son static final: con OFF el JIT elimina los
+    // incrementos, con EXACT la condicion se pliega a true. En SAMPLED cada
+    // solver cuenta solo 1 de cada 2^SAMPLE_SHIFT nodos y escala al leer.
+    // En paralelo cada tarea/worker cuenta en sus propios campos y se suman
+    // al final (LongAdder en ParallelSearch, Worker en el genetico).
+    static final class Counters {
+        static final boolean ON = !COUNTER_MODE.equals("off");
+        static final boolean SAMPLED = COUNTER_MODE.equals("sampled");
+        static final int SAMPLE_SHIFT = 4;
+        static final long SAMPLE_MASK = (1L << SAMPLE_SHIFT) - 1;
+
+        private Counters() {
+        }
+
+        // se cuenta el nodo numero 'tick'?
+        static boolean sampled(long tick) {
+            return (tick & SAMPLE_MASK) == 0;
+        }
+
+        static long scale(long raw) {
+            return SAMPLED ? raw << SAMPLE_SHIFT : raw;
+        }
+
+        static String describe() {
+            if (!ON) return "desactivados";
+            return SAMPLED ? "muestreo 1/" + (1 << SAMPLE_SHIFT) : "exactos";
+        }
+    }
+
+    // ============================================================
+    // ========================= EVENT LOG =========================
+    // Salida del genetico sin I/O en el camino medido: cada evento se copia
+    // (solo enteros, sin armar strings) a un anillo acotado y un hilo de fondo
+    // lo formatea y lo escribe. Si el anillo se llena el productor espera, asi
+    // no se pierde nada. flush() espera a que se vacie; se llama antes de
+    // imprimir directo para no desordenar la salida.
+    // ============================================================
+    static final class EventLog {
+        enum Level {
+            OFF, SUMMARY, TRACE;
+
+            static Level parse(String name) {
+                switch (name.toLowerCase(Locale.ROOT)) {
+                    case "off": return OFF;
+                    case "summary": return SUMMARY;
+                    default: return TRACE;
+                }
+            }
+        }
+
+        static final Level LEVEL = Level.parse(LOG_LEVEL);
+
+        private static final int CAPACITY = 1024;
+        private static final int GENERATION = 0, CROSS = 1, MUTATION = 2, TEXT = 3;
+        private static final String NL = System.lineSeparator();
+
+        private static final class Event {
+            int kind;
+            int gen, best, max;                   // GENERATION
+            final int[][] genes = new int[4][];   // CROSS: padres e hijos, MUTATION: antes y despues
+            final int[] lengths = new int[4];
+            final int[] fitness = new int[4];
+            boolean truncated;
+            boolean compact;
+            String text;                          // TEXT
+        }
+
+        private static final Event[] ring = new Event[CAPACITY];
+        private static final Object lock = new Object();
+        private static long head; // eventos publicados
+        private static long tail; // eventos ya escritos
+        private static Thread writer;
+
+        static {
+            for (int i = 0; i < CAPACITY; i++) ring[i] = new Event();
+        }
+
+        private EventLog() {
+        }
+
+        static boolean enabled(Level level) {
+            return LEVEL.ordinal() >= level.ordinal();
+        }
+
+        static void generation(int gen, int best, int max) {
+            synchronized (lock) {
+                Event e = claim(GENERATION);
+                e.gen = gen;
+                e.best = best;
+                e.max = max;
+                publish();
+            }
+        }
+
+        static void cross(int[] p1, int f1, int[] p2, int f2, int[] h1, int fh1, int[] h2, int fh2, int limit) {
+            synchronized (lock) {
+                Event e = claim(CROSS);
+                copy(e, 0, p1, f1, limit, limit < p1.length);
+                copy(e, 1, p2, f2, limit, limit < p2.length);
+                copy(e, 2, h1, fh1, limit, limit < h1.length);
+                copy(e, 3, h2, fh2, limit, limit < h2.length);
+                publish();
+            }
+        }
+
+        // se llama antes de aplicar el swap (i, j) sobre perm
+        static void mutation(int[] perm, int i, int j, int fitO, int fitM, int limit, boolean compact) {
+            synchronized (lock) {
+                Event e = claim(MUTATION);
+                copy(e, 0, perm, fitO, limit, limit < perm.length);
+                copy(e, 1, perm, fitM, limit, limit < perm.length);
+                if (i < limit) e.genes[1][i] = perm[j];
+                if (j < limit) e.genes[1][j] = perm[i];
+                e.compact = compact;
+                publish();
+            }
+        }
+
+        // mutacion ya armada por un worker (camino por pares): antes y despues
+        // con los primeros length genes
+        static void mutation(int[] before, int fitO, int[] after, int fitM, int length, boolean truncated,
+                             boolean compact) {
+            synchronized (lock) {
+                Event e = claim(MUTATION);
+                copy(e, 0, before, fitO, length, truncated);
+                copy(e, 1, after, fitM, length, truncated);
+                e.compact = compact;
+                publish();
+            }
+        }
+
+        // para lineas fijas o que solo se arman si el nivel las deja pasar
+        static void text(String line) {
+            synchronized (lock) {
+                claim(TEXT).text = line;
+                publish();
+            }
+        }
+
+        static void flush() {
+            synchronized (lock) {
+                while (tail != head) await();
+            }
+            System.out.flush();
+        }
+
+        // ---- productor (con lock tomado) ----
+        private static Event claim(int kind) {
+            while (head - tail == CAPACITY) await();
+            Event e = ring[(int) (head % CAPACITY)];
+            e.kind = kind;
+            return e;
+        }
+
+        private static void publish() {
+            head++;
+            if (writer == null) {
+                writer = new Thread(EventLog::drain, "puzzle-event-log");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            lock.notifyAll();
+        }
+
+        private static void copy(Event e, int k, int[] perm, int fit, int limit, boolean truncated) {
+            if (e.genes[k] == null || e.genes[k].length < limit) e.genes[k] = new int[limit];
+            System.arraycopy(perm, 0, e.genes[k], 0, limit);
+            e.lengths[k] = limit;
+            e.fitness[k] = fit;
+            e.truncated = truncated;
+        }
+
+        private static void await() {
+            try {
+                lock.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // ---- escritor ----
+        // Los eventos [tail, end) no los toca ningun productor hasta que tail
+        // avance, asi que se formatean fuera del lock.
+        private static void drain() {
+            StringBuilder sb = new StringBuilder(1 << 14);
+            while (true) {
+                long from, end;
+                synchronized (lock) {
+                    while (tail == head) await();
+                    from = tail;
+                    end = head;
+                }
+                for (long i = from; i < end; i++) format(ring[(int) (i % CAPACITY)], sb);
+                System.out.print(sb);
+                sb.setLength(0);
+                synchronized (lock) {
+                    tail = end;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        private static void format(Event e, StringBuilder sb) {
+            switch (e.kind) {
+                case GENERATION:
+                    sb.append("\n[GENETIC] ===== Generacion ").append(e.gen).append(" =====").append(NL);
+                    sb.append("[GENETIC] Mejor fitness actual: ").append(e.best).append(" / ").append(e.max).append(NL);
+                    break;
+                case CROSS:
+                    sb.append("[CRUCE]").append(NL);
+                    line(sb, "Padre 1 ", e, 0);
+                    line(sb, "Padre 2 ", e, 1);
+                    line(sb, "Hijo  1 ", e, 2);
+                    line(sb, "Hijo  2 ", e, 3);
+                    break;
+                case MUTATION:
+                    sb.append(e.compact ? "[MUTACION] (modo compacto: cromosoma truncado)" : "[MUTACION]").append(NL);
+                    line(sb, "Individuo 1 ", e, 0);
+                    line(sb, "Mutacion   ", e, 1);
+                    break;
+                default:
+                    sb.append(e.text).append(NL);
+                    e.text = null;
+            }
+        }
+
+        private static void line(StringBuilder sb, String label, Event e, int k) {
+            sb.append(label).append('{');
+            int[] genes = e.genes[k];
+            for (int i = 0; i < e.lengths[k]; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(genes[i]);
+            }
+            if (e.truncated) sb.append(",...");
+            sb.append("} puntuacion ").append(e.fitness[k]).append(NL);
+        }
+    }
+
+    // ============================================================
+    // ===================== FORWARD CHECKING ======================
+    // Para el orden por filas: despues de cada colocacion se mira si los
+    // vecinos que quedan expuestos (derecha y abajo) todavia tienen alguna
+    // pieza libre que les calce. Se llevan conteos de piezas libres por valor
+    // de left/top y la "demanda" de top de las celdas vacias que ya tienen su
+    // vecino de arriba puesto (la fila siguiente a medio definir). Todo es
+    // O(1) por colocacion y se deshace en forma simetrica.
+    // ============================================================
+    static final class ForwardCheck {
+        private final PieceSet set;
+        private final int size;
+        private final int total;
+        private final int[] libresIzq;  // piezas libres con left == v
+        private final int[] libresArr;  // piezas libres con top == v
+        private final int[] demandaArr; // celdas vacias que necesitan top == v
+
+        ForwardCheck(PieceSet set, int size) {
+            this.set = set;
+            this.size = size;
+            this.total = size * size;
+            this.libresIzq = new int[set.maxValue + 1];
+            this.libresArr = new int[set.maxValue + 1];
+            this.demandaArr = new int[set.maxValue + 1];
+            for (int i = 0; i < set.n; i++) {
+                libresIzq[set.left[i]]++;
+                libresArr[set.top[i]]++;
+            }
+        }
+
+        // Registra p en cell (ya colocada en el tablero). false = algun vecino
+        // expuesto se quedo sin piezas posibles; igual hay que llamar a quitar.
+        boolean colocar(int p, int cell) {
+            libresIzq[set.left[p]]--;
+            libresArr[set.top[p]]--;
+            if (cell >= size) demandaArr[set.top[p]]--;
+            if (cell + size < total) demandaArr[set.bottom[p]]++;
+
+            if (cell % size < size - 1 && libresIzq[set.right[p]] == 0) return false;
+            if (libresArr[set.top[p]] < demandaArr[set.top[p]]) return false;
+            return libresArr[set.bottom[p]] >= demandaArr[set.bottom[p]];
+        }
+
+        void quitar(int p, int cell) {
+            libresIzq[set.left[p]]++;
+            libresArr[set.top[p]]++;
+            if (cell >= size) demandaArr[set.top[p]]++;
+            if (cell + size < total) demandaArr[set.bottom[p]]--;
+        }
+    }
+
+    // ============================================================
+    // ================ CACHE DE FALLOS (transposiciones) ==========
+    // Al empezar una fila, lo que queda por resolver depende solo de los
+    // bottoms de la fila anterior y de que piezas ya se usaron: el orden en
+    // que se llenaron las filas de arriba no importa. Si ese estado ya se
+    // exploro entero sin exito, se corta. Clave = (fila, hash del perfil de
+    // bottoms, Zobrist del conjunto usado), 64 bits.
+    // Tabla acotada, asociativa de a WAYS entradas por balde con desalojo
+    // CLOCK (bit de referencia por entrada). Un fallo probado vale para
+    // cualquier busqueda del mismo puzzle, asi que las tareas de
+    // ParallelSearch comparten la tabla (claves atomicas; los bits de
+    // referencia pueden correr carreras sin romper nada).
+    // ============================================================
+    static final class FailCache {
+        private static final int WAYS = 4;
+        private static final long EMPTY = 0L;
+
+        final long[] zobrist; // un valor aleatorio por pieza
+
+        private final AtomicLongArray keys;
+        private final byte[] refs;
+        private final byte[] hands;
+        private final int bucketMask;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder stores = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        FailCache(PieceSet set, int slots) {
+            this.zobrist = new long[set.n];
+            for (int i = 0; i < set.n; i++) zobrist[i] = mix64(0x5DEECE66DL + i);
+
+            int buckets = Integer.highestOneBit(Math.max(1, slots / WAYS));
+            this.keys = new AtomicLongArray(buckets * WAYS);
+            this.refs = new byte[buckets * WAYS];
+            this.hands = new byte[buckets];
+            this.bucketMask = buckets - 1;
+        }
+
+        // Clave del estado al empezar la fila que arranca en la celda 'depth'
+        long key(CompactBoard tablero, PieceSet set, int depth, long usados) {
+            long perfil = depth / tablero.size;
+            for (int c = depth - tablero.size; c < depth; c++) {
+                perfil = mix64(perfil * 31 + set.bottom[tablero.grid[c]]);
+            }
+            long k = mix64(perfil ^ usados);
+            return (k == EMPTY) ? 1 : k;
+        }
+
+        boolean contains(long key) {
+            int b = ((int) (key >>> 32) & bucketMask) * WAYS;
+            for (int i = b; i < b + WAYS; i++) {
+                if (keys.get(i) == key) {
+                    refs[i] = 1;
+                    hits.increment();
+                    return true;
+                }
+            }
+            misses.increment();
+            return false;
+        }
+
+        void store(long key) {
+            int bucket = (int) (key >>> 32) & bucketMask;
+            int b = bucket * WAYS;
+            for (int i = b; i < b + WAYS; i++) {
+                long k = keys.get(i);
+                if (k == key) return;
+                if (k == EMPTY && keys.compareAndSet(i, EMPTY, key)) {
+                    refs[i] = 1;
+                    stores.increment();
+                    return;
+                }
+            }
+            // CLOCK: se limpia el bit de referencia hasta encontrar una entrada sin usar
+            int hand = hands[bucket];
+            while (refs[b + hand] != 0) {
+                refs[b + hand] = 0;
+                hand = (hand + 1) % WAYS;
+            }
+            keys.set(b + hand, key);
+            refs[b + hand] = 1;
+            hands[bucket] = (byte) ((hand + 1) % WAYS);
+            stores.increment();
+            evictions.increment();
+        }
+
+        String stats() {
+            long h = hits.sum();
+            long m = misses.sum();
+            return String.format("aciertos=%d, fallos=%d (%.1f%%), guardados=%d, desalojos=%d, capacidad=%d",
+                    h, m, 100.0 * h / Math.max(1, h + m), stores.sum(), evictions.sum(), keys.length());
+        }
+    }
+
+    // ============================================================
+    // ===================== BRUTE FORCE SOLVER ====================
+    // (codigo de companeros + timeout)
+    // Iterativo: la pila de llamadas se reemplaza por arreglos primitivos
+    // (cursor de candidato por profundidad), asi 100x100 no revienta el stack.
+    // Trabaja sobre PieceSet/CompactBoard; el Board solo se llena al final.
+    // ============================================================
+    static class BruteForceSolver implements SubtreeSearch, Solver {
+        private long comparaciones = 0;
+        private long asignaciones = 0;
+        private long nodos = 0;           // Counters.SAMPLED: nodos visitados
+        private boolean muestra = true;   // Counters.SAMPLED: se cuenta el nodo actual
+
+        private final Board board; // puede ser null si solo se usa el tablero compacto
+        private final PieceSet set;
+        private final CompactBoard tablero;
+
+        // pila explicita: cursor[d] = siguiente indice de pieza a probar en la celda d
+        private final int[] cursor;
+
+        private final long deadlineNano;
+        private final AtomicBoolean cancel; // busqueda paralela: otra tarea ya resolvio
+        private int base = 0;               // profundidad donde termina la busqueda (prefijo fijo)
+        private ForwardCheck forward;       // null = sin forward checking
+        private FailCache cache;            // null = sin cache de fallos
+        private long usados;                // Zobrist de las piezas puestas (solo con cache)
+        private long[] claveFila;           // clave de cada fila al empezarla
+        private boolean prefijoViable = true;
+
+        public BruteForceSolver(Board board, List<Piece> pieces, long maxMs) {
+            this(board, board.size, PieceSet.of(pieces), deadlineFor(maxMs), null);
+        }
+
+        public BruteForceSolver(int size, PieceSet set, long maxMs) {
+            this(null, size, set, deadlineFor(maxMs), null);
+        }
+
+        private BruteForceSolver(Board board, int size, PieceSet set, long deadlineNano, AtomicBoolean cancel) {
+            this.board = board;
+            this.set = set;
+            this.tablero = new CompactBoard(size, set.n);
+            this.cursor = new int[size * size + 1];
+            if (contar()) this.asignaciones += 3;
+            this.deadlineNano = deadlineNano;
+            this.cancel = cancel;
+        }
+
+        // Un subarbol de ParallelSearch (deadline comun a todas las tareas)
+        static BruteForceSolver subtree(int size, PieceSet set, long deadlineNano, AtomicBoolean cancel) {
+            return new BruteForceSolver(null, size, set, deadlineNano, cancel);
+        }
+
+        private boolean contar() {
+            return Counters.ON && (!Counters.SAMPLED || muestra);
+        }
+
+        private boolean timedOut() {
+            return System.nanoTime() > deadlineNano;
+        }
+
+        private boolean detenido() {
+            return timedOut() || (cancel != null && cancel.get());
+        }
+
+        public boolean solve() {
+            boolean solved = buscar();
+            if (board != null) tablero.copyTo(board, set);
+            return solved;
+        }
+
+        private boolean buscar() {
+            final int total = tablero.size * tablero.size;
+            final int cantidad = set.n;
+
+            int depth = base;
+            boolean entrando = true;
+
+            while (true) {
+                if (Counters.SAMPLED) muestra = Counters.sampled(++nodos);
+
+                if (entrando) {
+                    if (detenido()) return deshacerHasta(depth);
+
+                    if (contar()) comparaciones++;
+                    if (depth == total) {
+                        return true;
+                    }
+
+                    if (filaFallida(depth)) {
+                        if (depth == base) return false;
+                        depth--;
+                        entrando = false;
+                        continue;
+                    }
+
+                    // calculo de la siguiente celda (se cuenta igual que antes)
+                    if (contar()) comparaciones++;
+                    if (contar()) asignaciones += 2;
+                    cursor[depth] = 0;
+                } else {
+                    // el hijo fallo: backtracking de la pieza puesta en esta celda
+                    quitar(depth);
+                    if (contar()) asignaciones += 2;
+
+                    if (detenido()) return deshacerHasta(depth);
+                }
+
+                boolean bajar = false;
+                while (cursor[depth] < cantidad) {
+                    int p = cursor[depth]++;
+                    if (contar()) asignaciones++;
+                    if (contar()) comparaciones++;
+
+                    if (contar()) comparaciones++;
+                    if (!tablero.isUsed(p)) {
+
+                        if (contar()) comparaciones++;
+                        if (tablero.canPlace(set, p, depth)) {
+                            poner(p, depth);
+                            if (contar()) asignaciones += 2;
+
+                            if (contar()) comparaciones++;
+                            if (vecinosViables(p, depth)) {
+                                bajar = true;
+                                break;
+                            }
+                            quitar(depth);
+                            if (contar()) asignaciones += 2;
+                        }
+                    }
+
+                    if (detenido()) return deshacerHasta(depth);
+                }
+
+                if (bajar) {
+                    depth++;
+                    entrando = true;
+                } else {
+                    // subarbol agotado (un corte por timeout/cancelacion sale antes)
+                    if (cache != null && depth >= tablero.size && depth % tablero.size == 0) {
+                        cache.store(claveFila[depth / tablero.size]);
+                    }
+                    if (depth == base) return false;
+                    depth--;
+                    entrando = false;
+                }
+            }
+        }
+
+        private boolean vecinosViables(int p, int cell) {
+            if (forward == null) return true;
+            if (contar()) comparaciones++;
+            return forward.colocar(p, cell);
+        }
+
+        private void poner(int p, int cell) {
+            tablero.place(p, cell);
+            if (cache != null) usados ^= cache.zobrist[p];
+        }
+
+        private void quitar(int cell) {
+            int p = tablero.remove(cell);
+            if (forward != null) forward.quitar(p, cell);
+            if (cache != null) usados ^= cache.zobrist[p];
+        }
+
+        // Inicio de fila: guarda su clave y dice si ese estado ya fallo antes
+        private boolean filaFallida(int depth) {
+            if (cache == null || depth < tablero.size || depth % tablero.size != 0) return false;
+            long key = cache.key(tablero, set, depth, usados);
+            claveFila[depth / tablero.size] = key;
+            if (contar()) comparaciones++;
+            return cache.contains(key);
+        }
+
+        // Timeout: la version recursiva desarmaba el tablero al volver de cada nivel
+        private boolean deshacerHasta(int depth) {
+            for (int d = depth - 1; d >= 0; d--) {
+                quitar(d);
+                if (contar()) asignaciones += 2;
+            }
+            return false;
+        }
+
+        // ---- SubtreeSearch ----
+        public void placePrefix(int[] prefix) {
+            for (int d = 0; d < prefix.length; d++) {
+                poner(prefix[d], d);
+                if (forward != null) prefijoViable &= forward.colocar(prefix[d], d);
+            }
+            base = prefix.length;
+        }
+
+        public boolean searchSubtree() {
+            return prefijoViable && buscar();
+        }
+
+        // un timeout ya desarmo todo; si no, quedan las celdas del prefijo
+        public void clearPrefix() {
+            for (int d = base - 1; d >= 0; d--) {
+                if (tablero.grid[d] != CompactBoard.EMPTY) quitar(d);
+            }
+            base = 0;
+            prefijoViable = true;
+        }
+
+        // antes de buscar (y antes de placePrefix)
+        public void setForwardChecking(boolean on) {
+            this.forward = on ? new ForwardCheck(set, tablero.size) : null;
+        }
+
+        // antes de buscar (y antes de placePrefix); la cache puede ser compartida
+        public void setFailCache(FailCache cache) {
+            this.cache = cache;
+            this.claveFila = (cache != null) ? new long[tablero.size + 1] : null;
+        }
+
+        public CompactBoard getTablero() { return tablero; }
+        public long getComparaciones() { return Counters.scale(comparaciones); }
+        public long getAsignaciones() { return Counters.scale(asignaciones); }
+        public boolean isTimedOut() { return timedOut(); }
+    }
+
+    // ============================================================
+    // ================ INDICE DE CANDIDATOS (bitsets) =============
+    // Un bitset por valor de borde: "piezas con left == v" y "piezas con
+    // top == v" (y right/bottom para el orden MRV, donde una celda puede
+    // tener vecinos a la derecha o abajo). Los candidatos de una celda con vecino izquierdo y de arriba
+    // son izquierda[a] & arriba[b] & ~usadas, palabra por palabra, asi que
+    // solo se recorren piezas que de verdad calzan.
+    // Los bitsets estan aplanados: el de valor v ocupa [v * words, (v + 1) * words).
+    // ============================================================
+    static final class CandidateIndex {
+        final int words;
+        final long[] porIzquierda;
+        final long[] porArriba;
+        final long[] porDerecha;
+        final long[] porAbajo;
+        final long[] todas; // sin restriccion (bits de relleno en 0)
+
+        CandidateIndex(PieceSet set) {
+            this.words = (set.n + 63) >>> 6;
+            this.porIzquierda = new long[(set.maxValue + 1) * words];
+            this.porArriba = new long[(set.maxValue + 1) * words];
+            this.porDerecha = new long[(set.maxValue + 1) * words];
+            this.porAbajo = new long[(set.maxValue + 1) * words];
+            this.todas = new long[words];
+            for (int i = 0; i < set.n; i++) {
+                long bit = 1L << i;
+                int w = i >>> 6;
+                porIzquierda[set.left[i] * words + w] |= bit;
+                porArriba[set.top[i] * words + w] |= bit;
+                porDerecha[set.right[i] * words + w] |= bit;
+                porAbajo[set.bottom[i] * words + w] |= bit;
+                todas[w] |= bit;
+            }
+        }
+    }
+
+    // ============================================================
+    // ===================== AVANCE RAPIDO =========================
+    // (codigo de companeros + timeout)
+    // Iterativo igual que fuerza bruta: los candidatos de una celda dependen
+    // solo de sus vecinos ya colocados, asi que al volver se recalculan.
+    // Los candidatos salen de CandidateIndex (interseccion de bitsets), en el
+    // mismo orden de piezas que antes, por lo que encuentra la misma solucion.
+    // ============================================================
+    static class AvanceRapido implements SubtreeSearch, Solver {
+        private long comparaciones = 0;
+        private long asignaciones = 0;
+        private long nodos = 0;           // Counters.SAMPLED: nodos visitados
+        private boolean muestra = true;   // Counters.SAMPLED: se cuenta el nodo actual
+
+        private final Board board; // puede ser null si solo se usa el tablero compacto
+        private final PieceSet set;
+        private final CompactBoard tablero;
+        private final CandidateIndex indice;
+
+        // pila explicita: cursor[d] = siguiente indice de pieza (bit) a considerar en la celda d
+        private final int[] cursor;
+
+        // mascaras de la celda actual (se recalculan, no se guardan por nivel)
+        private long[] mascaraIzq;
+        private int baseIzq;
+        private long[] mascaraArr;
+        private int baseArr;
+
+        private final long deadlineNano;
+        private final AtomicBoolean cancel; // busqueda paralela: otra tarea ya resolvio
+        private int base = 0;               // profundidad donde termina la busqueda (prefijo fijo)
+        private ForwardCheck forward;       // null = sin forward checking
+        private FailCache cache;            // null = sin cache de fallos
+        private long usados;                // Zobrist de las piezas puestas (solo con cache)
+        private long[] claveFila;           // clave de cada fila al empezarla
+        private boolean prefijoViable = true;
+
+        public AvanceRapido(Board board, List<Piece> pieces, long maxMs) {
+            this(board, board.size, PieceSet.of(pieces), null, deadlineFor(maxMs), null);
+        }
+
+        public AvanceRapido(int size, PieceSet set, long maxMs) {
+            this(null, size, set, null, deadlineFor(maxMs), null);
+        }
+
+        private AvanceRapido(Board board, int size, PieceSet set, CandidateIndex indice,
+                             long deadlineNano, AtomicBoolean cancel) {
+            this.board = board;
+            this.set = set;
+            this.tablero = new CompactBoard(size, set.n);
+            this.indice = (indice != null) ? indice : new CandidateIndex(set);
+            this.cursor = new int[size * size + 1];
+            this.deadlineNano = deadlineNano;
+            this.cancel = cancel;
+            if (contar()) this.asignaciones += 3;
+        }
+
+        // Un subarbol de ParallelSearch: el indice (solo lectura) se comparte entre tareas
+        static AvanceRapido subtree(int size, PieceSet set, CandidateIndex indice,
+                                    long deadlineNano, AtomicBoolean cancel) {
+            return new AvanceRapido(null, size, set, indice, deadlineNano, cancel);
+        }
+
+        private boolean contar() {
+            return Counters.ON && (!Counters.SAMPLED || muestra);
+        }
+
+        private boolean timedOut() {
+            return System.nanoTime() > deadlineNano;
+        }
+
+        private boolean detenido() {
+            return timedOut() || (cancel != null && cancel.get());
+        }
+
+        private void mascarasPara(int cell) {
+            final int size = tablero.size;
+            final int[] grid = tablero.grid;
+            if (cell % size > 0 && grid[cell - 1] != CompactBoard.EMPTY) {
+                mascaraIzq = indice.porIzquierda;
+                baseIzq = set.right[grid[cell - 1]] * indice.words;
+            } else {
+                mascaraIzq = indice.todas;
+                baseIzq = 0;
+            }
+            if (cell >= size && grid[cell - size] != CompactBoard.EMPTY) {
+                mascaraArr = indice.porArriba;
+                baseArr = set.bottom[grid[cell - size]] * indice.words;
+            } else {
+                mascaraArr = indice.todas;
+                baseArr = 0;
+            }
+        }
+
+        // Primera pieza >= desde que calza y no esta usada, o -1
+        private int siguienteCandidato(int desde) {
+            final long[] usadas = tablero.used;
+            int w = desde >>> 6;
+            if (w >= indice.words) return -1;
+            long bits = mascaraIzq[baseIzq + w] & mascaraArr[baseArr + w] & ~usadas[w] & (-1L << desde);
+            if (contar()) comparaciones++;
+            while (bits == 0) {
+                if (++w == indice.words) return -1;
+                bits = mascaraIzq[baseIzq + w] & mascaraArr[baseArr + w] & ~usadas[w];
+                if (contar()) comparaciones++;
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        public boolean solve() {
+            boolean solved = buscar();
+            if (board != null) tablero.copyTo(board, set);
+            return solved;
+        }
+
+        private boolean buscar() {
+            final int total = tablero.size * tablero.size;
+
+            int depth = base;
+            boolean entrando = true;
+
+            while (true) {
+                if (Counters.SAMPLED) muestra = Counters.sampled(++nodos);
+
+                if (entrando) {
+                    if (detenido()) return deshacerHasta(depth);
+
+                    if (contar()) comparaciones++;
+                    if (depth == total) {
+                        return true;
+                    }
+
+                    if (filaFallida(depth)) {
+                        if (depth == base) return false;
+                        depth--;
+                        entrando = false;
+                        continue;
+                    }
+
+                    if (contar()) comparaciones++;
+                    if (contar()) asignaciones += 2;
+                    cursor[depth] = 0;
+                } else {
+                    quitar(depth);
+                    if (contar()) asignaciones += 2;
+
+                    if (detenido()) return deshacerHasta(depth);
+                }
+
+                mascarasPara(depth);
+                int p = siguienteCandidato(cursor[depth]);
+
+                // ya calza por construccion: no hace falta canPlace ni revisar usadas
+                boolean bajar = false;
+                while (p >= 0) {
+                    cursor[depth] = p + 1;
+                    poner(p, depth);
+                    if (contar()) asignaciones += 2;
+
+                    if (contar()) comparaciones++;
+                    if (vecinosViables(p, depth)) {
+                        bajar = true;
+                        break;
+                    }
+                    quitar(depth);
+                    if (contar()) asignaciones += 2;
+                    p = siguienteCandidato(cursor[depth]);
+                }
+
+                if (bajar) {
+                    depth++;
+                    entrando = true;
+                } else {
+                    // subarbol agotado (un corte por timeout/cancelacion sale antes)
+                    if (cache != null && depth >= tablero.size && depth % tablero.size == 0) {
+                        cache.store(claveFila[depth / tablero.size]);
+                    }
+                    if (depth == base) return false;
+                    depth--;
+                    entrando = false;
+                }
+            }
+        }
+
+        private boolean vecinosViables(int p, int cell) {
+            if (forward == null) return true;
+            if (contar()) comparaciones++;
+            return forward.colocar(p, cell);
+        }
+
+        private void poner(int p, int cell) {
+            tablero.place(p, cell);
+            if (cache != null) usados ^= cache.zobrist[p];
+        }
+
+        private void quitar(int cell) {
+            int p = tablero.remove(cell);
+            if (forward != null) forward.quitar(p, cell);
+            if (cache != null) usados ^= cache.zobrist[p];
+        }
+
+        // Inicio de fila: guarda su clave y dice si ese estado ya fallo antes
+        private boolean filaFallida(int depth) {
+            if (cache == null || depth < tablero.size || depth % tablero.size != 0) return false;
+            long key = cache.key(tablero, set, depth, usados);
+            claveFila[depth / tablero.size] = key;
+            if (contar()) comparaciones++;
+            return cache.contains(key);
+        }
+
+        private boolean deshacerHasta(int depth) {
+            for (int d = depth - 1; d >= 0; d--) {
+                quitar(d);
+                if (contar()) asignaciones += 2;
+            }
+            return false;
+        }
+
+        // ---- SubtreeSearch ----
+        public void placePrefix(int[] prefix) {
+            for (int d = 0; d < prefix.length; d++) {
+                poner(prefix[d], d);
+                if (forward != null) prefijoViable &= forward.colocar(prefix[d], d);
+            }
+            base = prefix.length;
+        }
+
+        public boolean searchSubtree() {
+            return prefijoViable && buscar();
+        }
+
+        // un timeout ya desarmo todo; si no, quedan las celdas del prefijo
+        public void clearPrefix() {
+            for (int d = base - 1; d >= 0; d--) {
+                if (tablero.grid[d] != CompactBoard.EMPTY) quitar(d);
+            }
+            base = 0;
+            prefijoViable = true;
+        }
+
+        // antes de buscar (y antes de placePrefix)
+        public void setForwardChecking(boolean on) {
+            this.forward = on ? new ForwardCheck(set, tablero.size) : null;
+        }
+
+        // antes de buscar (y antes de placePrefix); la cache puede ser compartida
+        public void setFailCache(FailCache cache) {
+            this.cache = cache;
+            this.claveFila = (cache != null) ? new long[tablero.size + 1] : null;
+        }
+
+        public CompactBoard getTablero() { return tablero; }
+        public long getComparaciones() { return Counters.scale(comparaciones); }
+        public long getAsignaciones() { return Counters.scale(asignaciones); }
+        public boolean isTimedOut() { return timedOut(); }
+    }
+
+    // ============================================================
+    // ============== AVANCE RAPIDO MRV (celda mas restringida) =====
+    // En vez de llenar por filas, en cada nodo se expande la celda de la
+    // frontera (vacia y con algun vecino colocado) con menos candidatos vivos.
+    // Los conteos se mantienen al colocar: los vecinos se recalculan con los
+    // bitsets de CandidateIndex (4 lados) y el resto de la frontera solo
+    // pierde la pieza colocada si le calzaba. Si alguna celda queda en 0 el
+    // nodo se descarta en el acto. Los cambios van a un trail para deshacer.
+    // ============================================================
+    static class AvanceRapidoMRV implements SubtreeSearch, Solver {
+        private static final int FRONTERA_SACA = 0;
+        private static final int FRONTERA_AGREGA = 1;
+        private static final int CUENTA = 2;
+
+        private long comparaciones = 0;
+        private long asignaciones = 0;
+        private long nodos = 0;           // Counters.SAMPLED: nodos visitados
+        private boolean muestra = true;   // Counters.SAMPLED: se cuenta el nodo actual
+
+        private final PieceSet set;
+        private final CompactBoard tablero;
+        private final CandidateIndex indice;
+        private final int size;
+        private final int total;
+
+        // pila explicita: celda elegida y siguiente pieza (bit) a probar por profundidad
+        private final int[] celda;
+        private final int[] cursor;
+        private final int[] marca; // tope del trail antes de colocar en esa profundidad
+
+        // frontera (lista + posicion de cada celda, -1 si no esta) y candidatos vivos
+        private final int[] frontera;
+        private final int[] posFrontera;
+        private int enFrontera = 0;
+        private final int[] cuenta;
+
+        // trail: pares (celda << 2 | tipo, valor anterior)
+        private int[] trail;
+        private int trailTop = 0;
+
+        // mascaras de la celda en expansion (izq, der, arriba, abajo)
+        private final long[][] mascara = new long[4][];
+        private final int[] baseMascara = new int[4];
+        private final long[][] mascaraAux = new long[4][];
+        private final int[] baseAux = new int[4];
+
+        private final long deadlineNano;
+        private final AtomicBoolean cancel;
+        private int base = 0;
+        private boolean prefijoViable = true;
+
+        public AvanceRapidoMRV(int size, PieceSet set, long maxMs) {
+            this(size, set, null, deadlineFor(maxMs), null);
+        }
+
+        private AvanceRapidoMRV(int size, PieceSet set, CandidateIndex indice, long deadlineNano, AtomicBoolean cancel) {
+            this.set = set;
+            this.size = size;
+            this.total = size * size;
+            this.tablero = new CompactBoard(size, set.n);
+            this.indice = (indice != null) ? indice : new CandidateIndex(set);
+            this.celda = new int[total + 1];
+            this.cursor = new int[total + 1];
+            this.marca = new int[total + 1];
+            this.frontera = new int[total];
+            this.posFrontera = new int[total];
+            Arrays.fill(posFrontera, -1);
+            this.cuenta = new int[total];
+            this.trail = new int[8 * total + 16];
+            this.deadlineNano = deadlineNano;
+            this.cancel = cancel;
+            if (contar()) this.asignaciones += 3;
+        }
+
+        static AvanceRapidoMRV subtree(int size, PieceSet set, CandidateIndex indice,
+                                       long deadlineNano, AtomicBoolean cancel) {
+            return new AvanceRapidoMRV(size, set, indice, deadlineNano, cancel);
+        }
+
+        private boolean contar() {
+            return Counters.ON && (!Counters.SAMPLED || muestra);
+        }
+
+        private boolean timedOut() {
+            return System.nanoTime() > deadlineNano;
+        }
+
+        private boolean detenido() {
+            return timedOut() || (cancel != null && cancel.get());
+        }
+
+        public boolean solve() {
+            return buscar();
+        }
+
+        private boolean buscar() {
+            int depth = base;
+            boolean entrando = true;
+
+            while (true) {
+                if (Counters.SAMPLED) muestra = Counters.sampled(++nodos);
+
+                if (entrando) {
+                    if (detenido()) return deshacerHasta(depth);
+
+                    if (contar()) comparaciones++;
+                    if (depth == total) {
+                        return true;
+                    }
+
+                    celda[depth] = elegirCelda();
+                    cursor[depth] = 0;
+                    if (contar()) asignaciones += 2;
+                } else {
+                    deshacer(depth);
+                    if (contar()) asignaciones += 2;
+
+                    if (detenido()) return deshacerHasta(depth);
+                }
+
+                int cell = celda[depth];
+                mascaras(cell, mascara, baseMascara);
+
+                boolean bajar = false;
+                int p;
+                while ((p = siguienteCandidato(cursor[depth])) >= 0) {
+                    cursor[depth] = p + 1;
+                    marca[depth] = trailTop;
+                    if (contar()) asignaciones += 2;
+                    if (colocar(p, cell)) {
+                        bajar = true;
+                        break;
+                    }
+                    // poda: alguna celda de la frontera quedo sin candidatos
+                    deshacer(depth);
+
+                    if (detenido()) return deshacerHasta(depth);
+                }
+
+                if (bajar) {
+                    depth++;
+                    entrando = true;
+                } else {
+                    if (depth == base) return false;
+                    depth--;
+                    entrando = false;
+                }
+            }
+        }
+
+        // celda de la frontera con menos candidatos (empate: la de menor indice)
+        private int elegirCelda() {
+            if (enFrontera == 0) return 0; // tablero vacio: se arranca por la esquina
+            int mejor = -1;
+            int minimo = Integer.MAX_VALUE;
+            for (int i = 0; i < enFrontera; i++) {
+                int c = frontera[i];
+                if (contar()) comparaciones++;
+                if (cuenta[c] < minimo || (cuenta[c] == minimo && c < mejor)) {
+                    minimo = cuenta[c];
+                    mejor = c;
+                }
+            }
+            return mejor;
+        }
+
+        // Coloca p en cell y actualiza frontera y conteos; false si deja una celda sin candidatos
+        private boolean colocar(int p, int cell) {
+            tablero.place(p, cell);
+            if (posFrontera[cell] >= 0) sacarDeFrontera(cell);
+
+            boolean viable = true;
+            int col = cell % size;
+            if (col > 0) viable &= actualizarVecino(cell - 1);
+            if (col < size - 1) viable &= actualizarVecino(cell + 1);
+            if (cell >= size) viable &= actualizarVecino(cell - size);
+            if (cell + size < total) viable &= actualizarVecino(cell + size);
+            if (!viable) return false;
+
+            // el resto de la frontera pierde a p si p le calzaba
+            for (int i = 0; i < enFrontera; i++) {
+                int f = frontera[i];
+                if (esVecino(f, cell)) continue;
+                if (contar()) comparaciones++;
+                if (calza(p, f)) {
+                    anotar(f, CUENTA, cuenta[f]);
+                    if (--cuenta[f] == 0) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean actualizarVecino(int nb) {
+            if (tablero.grid[nb] != CompactBoard.EMPTY) return true;
+            if (posFrontera[nb] < 0) agregarAFrontera(nb);
+            anotar(nb, CUENTA, cuenta[nb]);
+            cuenta[nb] = contarCandidatos(nb);
+            if (contar()) asignaciones++;
+            return cuenta[nb] > 0;
+        }
+
+        private boolean esVecino(int a, int b) {
+            int d = Math.abs(a - b);
+            return d == size || (d == 1 && a / size == b / size);
+        }
+
+        // p cumple los bordes de los vecinos ya colocados de la celda f
+        private boolean calza(int p, int f) {
+            final int[] grid = tablero.grid;
+            int col = f % size;
+            int g;
+            if (col > 0 && (g = grid[f - 1]) != CompactBoard.EMPTY && set.left[p] != set.right[g]) return false;
+            if (col < size - 1 && (g = grid[f + 1]) != CompactBoard.EMPTY && set.right[p] != set.left[g]) return false;
+            if (f >= size && (g = grid[f - size]) != CompactBoard.EMPTY && set.top[p] != set.bottom[g]) return false;
+            if (f + size < total && (g = grid[f + size]) != CompactBoard.EMPTY && set.bottom[p] != set.top[g]) return false;
+            return true;
+        }
+
+        // Restricciones de los 4 vecinos de la celda como (bitset, desplazamiento)
+        private void mascaras(int cell, long[][] m, int[] b) {
+            final int[] grid = tablero.grid;
+            final int words = indice.words;
+            int col = cell % size;
+            int g;
+
+            m[0] = indice.todas;
+            b[0] = 0;
+            if (col > 0 && (g = grid[cell - 1]) != CompactBoard.EMPTY) {
+                m[0] = indice.porIzquierda;
+                b[0] = set.right[g] * words;
+            }
+            m[1] = indice.todas;
+            b[1] = 0;
+            if (col < size - 1 && (g = grid[cell + 1]) != CompactBoard.EMPTY) {
+                m[1] = indice.porDerecha;
+                b[1] = set.left[g] * words;
+            }
+            m[2] = indice.todas;
+            b[2] = 0;
+            if (cell >= size && (g = grid[cell - size]) != CompactBoard.EMPTY) {
+                m[2] = indice.porArriba;
+                b[2] = set.bottom[g] * words;
+            }
+            m[3] = indice.todas;
+            b[3] = 0;
+            if (cell + size < total && (g = grid[cell + size]) != CompactBoard.EMPTY) {
+                m[3] = indice.porAbajo;
+                b[3] = set.top[g] * words;
+            }
+        }
+
+        private int contarCandidatos(int cell) {
+            mascaras(cell, mascaraAux, baseAux);
+            final long[] usadas = tablero.used;
+            int n = 0;
+            for (int w = 0; w < indice.words; w++) {
+                n += Long.bitCount(mascaraAux[0][baseAux[0] + w] & mascaraAux[1][baseAux[1] + w]
+                        & mascaraAux[2][baseAux[2] + w] & mascaraAux[3][baseAux[3] + w] & ~usadas[w]);
+                if (contar()) comparaciones++;
+            }
+            return n;
+        }
+
+        // Primera pieza >= desde que calza con los 4 vecinos y no esta usada, o -1
+        private int siguienteCandidato(int desde) {
+            final long[] usadas = tablero.used;
+            final long[] m0 = mascara[0], m1 = mascara[1], m2 = mascara[2], m3 = mascara[3];
+            final int b0 = baseMascara[0], b1 = baseMascara[1], b2 = baseMascara[2], b3 = baseMascara[3];
+            int w = desde >>> 6;
+            if (w >= indice.words) return -1;
+            long bits = m0[b0 + w] & m1[b1 + w] & m2[b2 + w] & m3[b3 + w] & ~usadas[w] & (-1L << desde);
+            if (contar()) comparaciones++;
+            while (bits == 0) {
+                if (++w == indice.words) return -1;
+                bits = m0[b0 + w] & m1[b1 + w] & m2[b2 + w] & m3[b3 + w] & ~usadas[w];
+                if (contar()) comparaciones++;
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        // ---- frontera + trail ----
+        private void agregarAFrontera(int cell) {
+            ponerEnFrontera(cell);
+            anotar(cell, FRONTERA_AGREGA, 0);
+        }
+
+        private void sacarDeFrontera(int cell) {
+            quitarDeFrontera(cell);
+            anotar(cell, FRONTERA_SACA, 0);
+        }
+
+        private void ponerEnFrontera(int cell) {
+            posFrontera[cell] = enFrontera;
+            frontera[enFrontera++] = cell;
+        }
+
+        private void quitarDeFrontera(int cell) {
+            int i = posFrontera[cell];
+            int ultima = frontera[--enFrontera];
+            frontera[i] = ultima;
+            posFrontera[ultima] = i;
+            posFrontera[cell] = -1;
+        }
+
+        private void anotar(int cell, int tipo, int anterior) {
+            if (trailTop + 2 > trail.length) trail = Arrays.copyOf(trail, trail.length * 2);
+            trail[trailTop++] = (cell << 2) | tipo;
+            trail[trailTop++] = anterior;
+        }
+
+        // Quita la pieza de la profundidad y deshace el trail hasta su marca
+        private void deshacer(int depth) {
+            tablero.remove(celda[depth]);
+            while (trailTop > marca[depth]) {
+                int anterior = trail[--trailTop];
+                int entrada = trail[--trailTop];
+                int cell = entrada >>> 2;
+                switch (entrada & 3) {
+                    case CUENTA:
+                        cuenta[cell] = anterior;
+                        break;
+                    case FRONTERA_AGREGA:
+                        quitarDeFrontera(cell);
+                        break;
+                    default: // FRONTERA_SACA
+                        ponerEnFrontera(cell);
+                        break;
+                }
+            }
+        }
+
+        private boolean deshacerHasta(int depth) {
+            for (int d = depth - 1; d >= 0; d--) {
+                deshacer(d);
+                if (contar()) asignaciones += 2;
+            }
+            return false;
+        }
+
+        // ---- SubtreeSearch ----
+        // el prefijo de ParallelSearch son las primeras celdas en orden por filas
+        public void placePrefix(int[] prefix) {
+            for (int d = 0; d < prefix.length; d++) {
+                celda[d] = d;
+                marca[d] = trailTop;
+                prefijoViable &= colocar(prefix[d], d);
+            }
+            base = prefix.length;
+        }
+
+        public boolean searchSubtree() {
+            return prefijoViable && buscar();
+        }
+
+        public void clearPrefix() {
+            for (int d = base - 1; d >= 0; d--) {
+                if (tablero.grid[celda[d]] != CompactBoard.EMPTY) deshacer(d);
+            }
+            base = 0;
+            prefijoViable = true;
+        }
+
+        public CompactBoard getTablero() { return tablero; }
+        public long getComparaciones() { return Counters.scale(comparaciones); }
+        public long getAsignaciones() { return Counters.scale(asignaciones); }
+        public boolean isTimedOut() { return timedOut(); }
+    }
+
+    // ============================================================
+    // ===================== AVANCE POR FILAS ======================
+    // Coloca filas enteras en vez de celdas. Una fila es una secuencia de
+    // `size` piezas distintas que calzan horizontalmente; se enumeran con los
+    // bitsets de CandidateIndex. Las filas 1.. dependen solo del perfil de
+    // tops que exige la fila de arriba: si un perfil tiene pocas filas
+    // (ROW_PROFILE_MAX) se enumeran una vez y se guardan compactas (piezas +
+    // bitset de piezas por fila); apilar una = disjunta con las usadas (AND de
+    // bitsets). Si tiene mas, esa fila se recorre en streaming saltando las
+    // piezas usadas mientras se arma, igual que la fila 0 (sin restriccion de
+    // tops). Al cerrar cada fila se poda por conteo de bordes de las libres.
+    // Filas repetidas: dos filas con el mismo conjunto de piezas y los mismos
+    // bottoms dejan exactamente el mismo problema abajo, asi que se prueba
+    // solo la primera. Firma = Zobrist de las piezas + hash de los bottoms (64
+    // bits, como la clave de FailCache); las listas de la memo se guardan sin
+    // repetidas y en streaming cada nivel recuerda las firmas ya probadas
+    // desde que se entro (hasta `vistasMax`; al pasarse se olvidan y solo se
+    // pierde la poda).
+    // La memoria de filas guardadas esta acotada por ROW_BUDGET (filas) y
+    // ROW_BUDGET_BYTES: una fila de 60x60 pesa ~700 bytes, asi que 2M filas
+    // no entran en el heap. Al llenarse se vacia la memo (las listas en uso
+    // siguen vivas en la pila).
+    // ============================================================
+    static class AvancePorFilas implements Solver {
+        private long comparaciones = 0;
+        private long asignaciones = 0;
+        private long nodos = 0;           // Counters.SAMPLED: nodos visitados
+        private boolean muestra = true;   // Counters.SAMPLED: se cuenta el nodo actual
+
+        private final PieceSet set;
+        private final CandidateIndex indice;
+        private final CompactBoard tablero;
+        private final int size;
+        private final int words;
+        private final long rowBudget;
+        private final long perfilMax;
+
+        // memo: hash del perfil de tops -> filas que lo cumplen
+        private final Map<Long, Filas> memo = new HashMap<>();
+        private final GeneticSolver.LongSet grandes = new GeneticSolver.LongSet(64); // perfiles en streaming
+        private long filasGuardadas = 0;
+        private long memoVaciados = 0;
+        private long perfilesGrandes = 0;
+        private long filasRepetidas = 0;
+
+        // filas repetidas: un valor al azar por pieza y firmas ya probadas por nivel
+        private final long[] zobrist;
+        private final GeneticSolver.LongSet[] vistas;
+        private final GeneticSolver.LongSet unicas = new GeneticSolver.LongSet(64); // al armar una lista
+        private final int vistasMax;
+
+        // pila por fila: lista memorizada (o null = streaming) y siguiente indice a probar
+        private final Filas[] lista;
+        private final int[] cursor;
+        private final Enumerador[] flujo;  // fila r en streaming
+        private final int[][] perfiles;    // tops exigidos a la fila r
+        private final Enumerador armado;   // arma las listas de la memo
+        private final long[] usadas;
+        private final long[] ninguna; // mascara vacia para armar listas sin mirar usadas
+
+        // piezas libres por valor de borde y bottoms de la fila recien cerrada (poda)
+        private final int[] libresArr, libresAbj, libresIzq, libresDer;
+        private final int[] demanda;
+
+        private final long deadlineNano;
+        private AtomicBoolean cancel; // portafolio: otro motor ya resolvio (o null)
+
+        public AvancePorFilas(int size, PieceSet set, long maxMs, long rowBudget) {
+            this.set = set;
+            this.size = size;
+            this.indice = new CandidateIndex(set);
+            this.tablero = new CompactBoard(size, set.n);
+            this.words = indice.words;
+            this.rowBudget = Math.min(rowBudget, ROW_BUDGET_BYTES / (4L * size + 8L * words));
+            this.perfilMax = Math.min(this.rowBudget, ROW_PROFILE_MAX);
+            this.lista = new Filas[size];
+            this.cursor = new int[size];
+            this.flujo = new Enumerador[size];
+            this.perfiles = new int[size][size];
+            for (int r = 0; r < size; r++) flujo[r] = new Enumerador(true);
+            this.armado = new Enumerador(false);
+            this.zobrist = new long[set.n];
+            for (int p = 0; p < set.n; p++) zobrist[p] = mix64(0x5DEECE66DL + p);
+            this.vistas = new GeneticSolver.LongSet[size];
+            for (int r = 0; r < size; r++) vistas[r] = new GeneticSolver.LongSet(64);
+            this.vistasMax = (int) Math.max(1024, this.rowBudget / size);
+            this.usadas = new long[words];
+            this.ninguna = new long[words];
+            int valores = set.maxValue + 1;
+            this.libresArr = new int[valores];
+            this.libresAbj = new int[valores];
+            this.libresIzq = new int[valores];
+            this.libresDer = new int[valores];
+            this.demanda = new int[valores];
+            for (int p = 0; p < set.n; p++) {
+                libresArr[set.top[p]]++;
+                libresAbj[set.bottom[p]]++;
+                libresIzq[set.left[p]]++;
+                libresDer[set.right[p]]++;
+            }
+            this.deadlineNano = deadlineFor(maxMs);
+        }
+
+        // Filas guardadas en forma compacta: fila k = piezas[k*size ..], bits[k*words ..]
+        static final class Filas {
+            final int[] perfil; // tops exigidos (para verificar la clave)
+            int count = 0;
+            int[] piezas;
+            long[] bits;
+
+            Filas(int[] perfil, int size, int words) {
+                this.perfil = perfil;
+                this.piezas = new int[4 * size];
+                this.bits = new long[4 * words];
+            }
+
+            void add(int[] fila, long[] filaBits, int size, int words) {
+                if ((count + 1) * size > piezas.length) {
+                    piezas = Arrays.copyOf(piezas, piezas.length * 2);
+                    bits = Arrays.copyOf(bits, bits.length * 2);
+                }
+                System.arraycopy(fila, 0, piezas, count * size, size);
+                System.arraycopy(filaBits, 0, bits, count * words, words);
+                count++;
+            }
+        }
+
+        // Enumerador reanudable de filas horizontalmente validas (DFS iterativo).
+        // libres = saltar las piezas ya puestas en el tablero (streaming); las
+        // listas de la memo se arman sin mirarlas para servir en cualquier estado.
+        private final class Enumerador {
+            private final boolean libres;
+            private int[] perfil; // null = fila 0 (sin restriccion de tops)
+            final int[] fila = new int[size];
+            final long[] enFila = new long[words];
+            private final int[] desde = new int[size];
+            private int col = 0;
+            private boolean terminado = false;
+
+            Enumerador(boolean libres) {
+                this.libres = libres;
+            }
+
+            void reset(int[] perfil) {
+                this.perfil = perfil;
+                Arrays.fill(enFila, 0L);
+                desde[0] = 0;
+                col = 0;
+                terminado = false;
+            }
+
+            // avanza a la siguiente fila valida; false si no hay mas (o hay que detenerse)
+            boolean next() {
+                if (terminado) return false;
+                if (col == size) {
+                    // se devolvio una fila: seguir desde la ultima columna
+                    col = size - 1;
+                    quitar(col);
+                }
+                while (true) {
+                    if (detenido()) return false;
+                    int p = candidato(col, desde[col]);
+                    if (p >= 0) {
+                        desde[col] = p + 1;
+                        fila[col] = p;
+                        enFila[p >>> 6] |= 1L << p;
+                        if (++col == size) return true;
+                        desde[col] = 0;
+                    } else {
+                        if (col == 0) {
+                            terminado = true;
+                            return false;
+                        }
+                        col--;
+                        quitar(col);
+                    }
+                }
+            }
+
+            private void quitar(int c) {
+                int p = fila[c];
+                enFila[p >>> 6] &= ~(1L << p);
+            }
+
+            private int candidato(int c, int from) {
+                final long[] izq;
+                final int baseIzq;
+                if (c > 0) {
+                    izq = indice.porIzquierda;
+                    baseIzq = set.right[fila[c - 1]] * words;
+                } else {
+                    izq = indice.todas;
+                    baseIzq = 0;
+                }
+                final long[] arr;
+                final int baseArr;
+                if (perfil != null) {
+                    arr = indice.porArriba;
+                    baseArr = perfil[c] * words;
+                } else {
+                    arr = indice.todas;
+                    baseArr = 0;
+                }
+                final long[] fuera = libres ? usadas : ninguna;
+                int w = from >>> 6;
+                if (w >= words) return -1;
+                long b = izq[baseIzq + w] & arr[baseArr + w] & ~enFila[w] & ~fuera[w] & (-1L << from);
+                if (contar()) comparaciones++;
+                while (b == 0) {
+                    if (++w == words) return -1;
+                    b = izq[baseIzq + w] & arr[baseArr + w] & ~enFila[w] & ~fuera[w];
+                    if (contar()) comparaciones++;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(b);
+            }
+        }
+
+        void setCancel(AtomicBoolean cancel) {
+            this.cancel = cancel;
+        }
+
+        private boolean contar() {
+            return Counters.ON && (!Counters.SAMPLED || muestra);
+        }
+
+        private boolean timedOut() {
+            return System.nanoTime() > deadlineNano;
+        }
+
+        private boolean detenido() {
+            return timedOut() || (cancel != null && cancel.get());
+        }
+
+        public boolean solve() {
+            entrar(0);
+            int r = 0;
+            while (true) {
+                if (Counters.SAMPLED) muestra = Counters.sampled(++nodos);
+                if (detenido()) return false;
+
+                if (siguienteFila(r)) {
+                    if (r == size - 1) return true;
+                    if (!viable(r)) {
+                        quitarFila(r); // se prueba la siguiente fila en r
+                        continue;
+                    }
+                    r++;
+                    entrar(r);
+                } else {
+                    // fila agotada: se saca la de arriba y se prueba la siguiente alli
+                    if (r == 0) return false;
+                    r--;
+                    quitarFila(r);
+                }
+            }
+        }
+
+        // prepara la fila r para los tops que deja la fila de arriba
+        private void entrar(int r) {
+            int[] perfil = null;
+            if (r > 0) {
+                perfil = perfiles[r];
+                for (int c = 0; c < size; c++) perfil[c] = set.bottom[tablero.grid[(r - 1) * size + c]];
+            }
+            // la fila 0 no tiene restriccion de tops: siempre en streaming
+            lista[r] = (r > 0) ? filasPara(perfil) : null;
+            cursor[r] = 0;
+            if (lista[r] == null) {
+                flujo[r].reset(perfil);
+                olvidar(r);
+            }
+        }
+
+        // vacia las firmas del nivel r; una tabla que crecio se cambia por una
+        // chica (clear() recorre toda la capacidad y entrar() es frecuente)
+        private void olvidar(int r) {
+            if (vistas[r].size() > 1024) vistas[r] = new GeneticSolver.LongSet(64);
+            else vistas[r].clear();
+        }
+
+        // mismo conjunto de piezas + mismos bottoms = mismo problema por debajo
+        private long firma(int[] piezas, int off) {
+            long conjunto = 0, bottoms = 0;
+            for (int c = 0; c < size; c++) {
+                int p = piezas[off + c];
+                conjunto ^= zobrist[p];
+                bottoms = mix64(bottoms * 31 + set.bottom[p]);
+            }
+            long k = mix64(conjunto ^ bottoms);
+            return (k == 0) ? 1 : k;
+        }
+
+        // false si en el nivel r ya se probo una fila equivalente
+        private boolean nueva(int r, int[] fila) {
+            if (contar()) comparaciones++;
+            if (vistas[r].size() >= vistasMax) olvidar(r);
+            if (vistas[r].add(firma(fila, 0))) return true;
+            filasRepetidas++;
+            return false;
+        }
+
+        // coloca en la fila r la siguiente fila que no use piezas ya puestas
+        private boolean siguienteFila(int r) {
+            Filas l = lista[r];
+            if (l == null) {
+                Enumerador e = flujo[r];
+                do {
+                    if (!e.next()) return false;
+                } while (!nueva(r, e.fila));
+                colocarFila(r, e.fila, 0, e.enFila, 0);
+                return true;
+            }
+            int i = cursor[r];
+            while (i < l.count && !disjunta(l.bits, i * words)) i++;
+            cursor[r] = i + 1;
+            if (i == l.count) return false;
+            colocarFila(r, l.piezas, i * size, l.bits, i * words);
+            return true;
+        }
+
+        // Poda por conteo de bordes al cerrar la fila r (con filas por debajo):
+        // - la fila r+1 necesita por cada valor v tantas libres con top v como
+        //   bottoms v deja la fila r
+        // - todo top libre calza con un bottom de la fila r o con el de otra libre
+        // - todo right libre calza con un left libre, salvo los de la ultima
+        //   columna (uno por fila que falta)
+        private boolean viable(int r) {
+            if (contar()) comparaciones++;
+            for (int c = 0; c < size; c++) demanda[set.bottom[tablero.grid[r * size + c]]]++;
+            boolean ok = true;
+            int sueltos = 0;
+            for (int v = 0; v < demanda.length && ok; v++) {
+                ok = demanda[v] <= libresArr[v] && libresArr[v] <= libresAbj[v] + demanda[v];
+                if (libresDer[v] > libresIzq[v]) sueltos += libresDer[v] - libresIzq[v];
+            }
+            for (int c = 0; c < size; c++) demanda[set.bottom[tablero.grid[r * size + c]]] = 0;
+            return ok && sueltos <= size - 1 - r;
+        }
+
+        private boolean disjunta(long[] bits, int off) {
+            if (contar()) comparaciones++;
+            for (int w = 0; w < words; w++) {
+                if ((bits[off + w] & usadas[w]) != 0) return false;
+            }
+            return true;
+        }
+
+        private void colocarFila(int r, int[] piezas, int off, long[] bits, int bitsOff) {
+            for (int c = 0; c < size; c++) {
+                int p = piezas[off + c];
+                tablero.place(p, r * size + c);
+                libresArr[set.top[p]]--;
+                libresAbj[set.bottom[p]]--;
+                libresIzq[set.left[p]]--;
+                libresDer[set.right[p]]--;
+            }
+            for (int w = 0; w < words; w++) usadas[w] |= bits[bitsOff + w];
+            if (contar()) asignaciones += size;
+        }
+
+        private void quitarFila(int r) {
+            Filas l = lista[r];
+            long[] bits = (l == null) ? flujo[r].enFila : l.bits;
+            int bitsOff = (l == null) ? 0 : (cursor[r] - 1) * words;
+            for (int c = 0; c < size; c++) {
+                int p = tablero.remove(r * size + c);
+                libresArr[set.top[p]]++;
+                libresAbj[set.bottom[p]]++;
+                libresIzq[set.left[p]]++;
+                libresDer[set.right[p]]++;
+            }
+            for (int w = 0; w < words; w++) usadas[w] &= ~bits[bitsOff + w];
+            if (contar()) asignaciones += size;
+        }
+
+        // Todas las filas con esos tops (sin mirar piezas usadas y sin
+        // repetidas), memorizadas por perfil. null = el perfil tiene mas de
+        // perfilMax filas distintas (o mas de 4 * perfilMax con repetidas):
+        // esa fila se recorre en streaming saltando las piezas usadas (ya no
+        // se corta la busqueda, y se recuerda el perfil para no volver a armarlo)
+        private Filas filasPara(int[] perfil) {
+            long key = 0;
+            for (int v : perfil) key = mix64(key * 31 + v);
+            if (contar()) comparaciones++;
+            if (grandes.contains(key)) return null;
+            Filas f = memo.get(key);
+            if (f != null && Arrays.equals(f.perfil, perfil)) return f;
+
+            f = new Filas(perfil.clone(), size, words);
+            armado.reset(perfil);
+            unicas.clear();
+            long enumeradas = 0;
+            while (armado.next()) {
+                if (contar()) comparaciones++;
+                if (unicas.add(firma(armado.fila, 0))) f.add(armado.fila, armado.enFila, size, words);
+                else filasRepetidas++;
+                if (f.count > perfilMax || ++enumeradas > 4 * perfilMax) {
+                    grandes.add(key);
+                    perfilesGrandes++;
+                    return null;
+                }
+            }
+            if (detenido()) return null; // incompleta: no se guarda
+
+            if (filasGuardadas + f.count > rowBudget) {
+                memo.clear();
+                filasGuardadas = 0;
+                memoVaciados++;
+            }
+            memo.put(key, f);
+            filasGuardadas += f.count;
+            return f;
+        }
+
+        public CompactBoard getTablero() { return tablero; }
+        public long getComparaciones() { return Counters.scale(comparaciones); }
+        public long getAsignaciones() { return Counters.scale(asignaciones); }
+        public boolean isTimedOut() { return timedOut(); }
+
+        String memoStats() {
+            return "perfiles=" + memo.size() + ", filas guardadas=" + filasGuardadas + ", vaciados=" + memoVaciados
+                    + ", perfiles en streaming=" + perfilesGrandes + ", filas repetidas=" + filasRepetidas;
+        }
+    }
+
+    // ============================================================
+    // ================ BUSQUEDA PARALELA (backtracking) ===========
+    // El arbol se parte en las primeras SEARCH_SPLIT_DEPTH celdas. Los
+    // prefijos validos se generan de a uno, en el orden del solver, a medida
+    // que los piden los hilos (a 100x100 hay ~10M: armar la lista entera
+    // tardaba mas que el timeout). Cada hilo tiene un solo solver que limpia
+    // y reusa de prefijo en prefijo. El primero que llena el tablero levanta
+    // `found` y los demas se detienen en su siguiente nodo. Los contadores de
+    // cada hilo se suman al final.
+    // El reparto es solo a nivel de prefijo: un subarbol no se vuelve a partir
+    // ni se roba a mitad de camino, asi que un prefijo con un subarbol enorme
+    // queda entero en un hilo (el pool se usa como un pool fijo de hilos).
+    // Subir SEARCH_SPLIT_DEPTH da prefijos mas chicos y mejor reparto.
+    // ============================================================
+    interface SubtreeSearch {
+        void placePrefix(int[] prefix);
+        boolean searchSubtree();
+        void clearPrefix(); // tras un searchSubtree sin exito: tablero vacio otra vez
+        CompactBoard getTablero();
+        long getComparaciones();
+        long getAsignaciones();
+    }
+
+    static class ParallelSearch {
+        enum Motor { FUERZA_BRUTA, AVANCE_RAPIDO, AVANCE_RAPIDO_MRV }
+
+        private final int size;
+        private final PieceSet set;
+        private final Motor motor;
+        private final int splitDepth;
+        private final long deadlineNano;
+        private final CandidateIndex indice; // compartido por las tareas de avance rapido
+        private boolean forwardCheck = false;   // fuerza bruta / avance rapido por filas
+        private FailCache cache;                // compartida por todas las tareas (o null)
+
+        private final AtomicBoolean found = new AtomicBoolean();
+        private final LongAdder comparaciones = new LongAdder();
+        private final LongAdder asignaciones = new LongAdder();
+        private volatile CompactBoard solution;
+
+        public ParallelSearch(int size, PieceSet set, boolean avanceRapido, int splitDepth, long maxMs) {
+            this(size, set, avanceRapido ? Motor.AVANCE_RAPIDO : Motor.FUERZA_BRUTA, splitDepth, maxMs);
+        }
+
+        public ParallelSearch(int size, PieceSet set, Motor motor, int splitDepth, long maxMs) {
+            this.size = size;
+            this.set = set;
+            this.motor = motor;
+            this.splitDepth = Math.min(splitDepth, size * size);
+            this.deadlineNano = deadlineFor(maxMs);
+            this.indice = (motor != Motor.FUERZA_BRUTA) ? new CandidateIndex(set) : null;
+        }
+
+        public boolean solve(int threads) {
+            Prefijos prefijos = new Prefijos();
+            List<Trabajador> trabajadores = new ArrayList<>();
+            for (int t = 0; t < threads; t++) trabajadores.add(new Trabajador(prefijos));
+
+            ForkJoinPool pool = MemoryMeter.newPool(threads);
+            try {
+                for (Trabajador t : trabajadores) pool.execute(t);
+                for (Trabajador t : trabajadores) t.join();
+            } finally {
+                pool.shutdown();
+            }
+            return solution != null;
+        }
+
+        private SubtreeSearch nuevoSolver() {
+            switch (motor) {
+                case AVANCE_RAPIDO: {
+                    AvanceRapido ar = AvanceRapido.subtree(size, set, indice, deadlineNano, found);
+                    ar.setForwardChecking(forwardCheck);
+                    ar.setFailCache(cache);
+                    return ar;
+                }
+                case AVANCE_RAPIDO_MRV:
+                    return AvanceRapidoMRV.subtree(size, set, indice, deadlineNano, found);
+                default: {
+                    BruteForceSolver bf = BruteForceSolver.subtree(size, set, deadlineNano, found);
+                    bf.setForwardChecking(forwardCheck);
+                    bf.setFailCache(cache);
+                    return bf;
+                }
+            }
+        }
+
+        // Prefijos validos de largo splitDepth en el mismo orden que los
+        // recorreria el solver, con una pila explicita que se reanuda en cada next
+        private final class Prefijos {
+            private final CompactBoard b = new CompactBoard(size, set.n);
+            private final int[] cursor = new int[splitDepth + 1];
+            private int depth = 0;
+            private boolean agotado = false;
+
+            // copia el siguiente prefijo en out; false si no quedan, se vencio
+            // el tiempo o alguien ya resolvio
+            synchronized boolean next(int[] out) {
+                if (agotado) return false;
+                if (splitDepth == 0) {
+                    agotado = true; // un solo prefijo: el vacio
+                    return true;
+                }
+                if (depth == splitDepth) {
+                    // se devolvio uno: seguir desde la ultima celda
+                    depth--;
+                    b.remove(depth);
+                }
+                while (true) {
+                    if (found.get() || isTimedOut()) {
+                        agotado = true;
+                        return false;
+                    }
+                    boolean bajar = false;
+                    while (cursor[depth] < set.n) {
+                        int p = cursor[depth]++;
+                        if (Counters.ON) comparaciones.increment();
+                        if (b.isUsed(p) || !b.canPlace(set, p, depth)) continue;
+                        b.place(p, depth);
+                        bajar = true;
+                        break;
+                    }
+                    if (bajar) {
+                        depth++;
+                        if (depth == splitDepth) {
+                            System.arraycopy(b.grid, 0, out, 0, splitDepth);
+                            return true;
+                        }
+                        cursor[depth] = 0;
+                    } else {
+                        if (depth == 0) {
+                            agotado = true;
+                            return false;
+                        }
+                        depth--;
+                        b.remove(depth);
+                    }
+                }
+            }
+        }
+
+        // Un hilo: pide prefijos hasta que se acaban, vence el tiempo o alguien resuelve
+        @SuppressWarnings("serial") // las tareas nunca se serializan
+        private final class Trabajador extends RecursiveAction {
+            private final Prefijos prefijos;
+
+            Trabajador(Prefijos prefijos) {
+                this.prefijos = prefijos;
+            }
+
+            @Override
+            protected void compute() {
+                SubtreeSearch s = nuevoSolver();
+                int[] prefix = new int[splitDepth];
+                while (!found.get() && !isTimedOut() && prefijos.next(prefix)) {
+                    s.clearPrefix();
+                    s.placePrefix(prefix);
+                    if (s.searchSubtree()) {
+                        if (found.compareAndSet(false, true)) solution = s.getTablero();
+                        break;
+                    }
+                }
+                comparaciones.add(s.getComparaciones());
+                asignaciones.add(s.getAsignaciones());
+            }
+        }
+
+        public void setForwardChecking(boolean on) {
+            this.forwardCheck = on;
+        }
+
+        public void setFailCache(FailCache cache) {
+            this.cache = cache;
+        }
+
+        // tablero vacio si no hubo solucion (igual que la version secuencial)
+        public CompactBoard getTablero() {
+            return (solution != null) ? solution : new CompactBoard(size, set.n);
+        }
+
+        public long getComparaciones() { return comparaciones.sum(); }
+        public long getAsignaciones() { return asignaciones.sum(); }
+        public boolean isTimedOut() { return System.nanoTime() > deadlineNano; }
+    }
+
+// ============================================================
+// ===================== GENETIC SOLVER (persona 3) ============
+// ============================================================
+static class GeneticSolver {
+
+    static class Individual {
+        int[] perm;   // permutacion de indices de piezas (0..n-1)
+        int fitness;
+        long hash;
+    }
+
+    // RNG + contadores de un flujo de trabajo. El camino secuencial usa uno
+    // solo (main); en paralelo cada par de hijos tiene el suyo, sembrado a
+    // partir de (semilla, generacion, par), asi el resultado no depende de
+    // cuantos hilos haya.
+    static final class Worker {
+        RandomGenerator rand;
+        long comparisons;
+        long assignments;
+        private long ticks;             // Counters.SAMPLED: operaciones empezadas
+        private boolean sample = true;  // Counters.SAMPLED: se cuenta la operacion actual
+
+        // marcas de fillOX: el gen g esta usado si used[g] == stamp, asi no
+        // hay que limpiar el arreglo entre cruces
+        private int[] used;
+        private int stamp;
+
+        // camino por pares: las mutaciones del par se guardan aca (antes y
+        // despues, primeros genes) y se imprimen en orden de par al final
+        private int[][] before = new int[4][], after = new int[4][];
+        private int[] fitBefore = new int[4], fitAfter = new int[4];
+        private int mutations;
+
+        Worker(RandomGenerator rand) {
+            this.rand = rand;
+        }
+
+        // el worker de un par se reusa en la generacion siguiente con otro flujo
+        void reset(RandomGenerator rand) {
+            this.rand = rand;
+            comparisons = 0;
+            assignments = 0;
+            ticks = 0;
+            sample = true;
+            mutations = 0;
+        }
+
+        // se llama antes de aplicar el swap (i, j) sobre perm
+        void recordMutation(int[] perm, int i, int j, int fitO, int fitM, int limit) {
+            if (mutations == before.length) {
+                before = Arrays.copyOf(before, mutations * 2);
+                after = Arrays.copyOf(after, mutations * 2);
+                fitBefore = Arrays.copyOf(fitBefore, mutations * 2);
+                fitAfter = Arrays.copyOf(fitAfter, mutations * 2);
+            }
+            int m = mutations++;
+            if (before[m] == null || before[m].length < limit) {
+                before[m] = new int[limit];
+                after[m] = new int[limit];
+            }
+            System.arraycopy(perm, 0, before[m], 0, limit);
+            System.arraycopy(perm, 0, after[m], 0, limit);
+            if (i < limit) after[m][i] = perm[j];
+            if (j < limit) after[m][j] = perm[i];
+            fitBefore[m] = fitO;
+            fitAfter[m] = fitM;
+        }
+
+        // cruce EDGE: piezas ya puestas (bitset) y cursores por valor en el indice
+        private long[] placedBits;
+        private int[] cursors;
+
+        long[] placedBits(int words) {
+            if (placedBits == null || placedBits.length < words) placedBits = new long[words];
+            else Arrays.fill(placedBits, 0, words, 0L);
+            return placedBits;
+        }
+
+        int[] cursors(int count) {
+            if (cursors == null || cursors.length < count) cursors = new int[count];
+            else Arrays.fill(cursors, 0, count, 0);
+            return cursors;
+        }
+
+        int nextStamp(int n) {
+            if (used == null || used.length < n) {
+                used = new int[n];
+                stamp = 0;
+            }
+            if (++stamp == 0) { // dio la vuelta: se limpia una vez
+                Arrays.fill(used, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        boolean counting() {
+            return Counters.ON && (!Counters.SAMPLED || sample);
+        }
+
+        // se llama al empezar cada individuo / par de hijos
+        void nextSample() {
+            if (Counters.SAMPLED) sample = Counters.sampled(++ticks);
+        }
+    }
+
+    // OX conserva posiciones absolutas; EDGE conserva las piezas que ya calzan
+    // con algun vecino en los padres y llena el resto con el indice de bordes
+    enum Crossover {
+        OX, EDGE;
+
+        static Crossover parse(String name) {
+            return name.equalsIgnoreCase("edge") ? EDGE : OX;
+        }
+    }
+
+    private final int size;
+    private final int n;
+    private final PieceSet set;
+    private final int maxFitness;
+
+    private Crossover crossover;
+    private CandidateIndex indice; // para EDGE y la semilla voraz
+
+    private final int populationSize;
+    private final int childrenCount;
+
+    private final long seed;
+    private final Worker main;
+    private final long deadlineNano;
+    private AtomicBoolean cancel; // portafolio: otro motor ya resolvio (o null)
+
+    // imprimir modo compacto para tamanos grandes
+    private final boolean compact;
+
+    // las islas corren en paralelo y no imprimen cruces/mutaciones
+    private boolean verbose = true;
+
+    // != null: los hijos de cada generacion se producen en paralelo
+    private ForkJoinPool pool;
+
+    private List<Individual> population;
+
+    // hashes vistos en la generacion (camino secuencial); se reusa entre generaciones
+    private final LongSet seen = new LongSet(64);
+
+    // ---- arena ----
+    // Los individuos (y sus int[n]) se reciclan: los que quedan fuera en el
+    // reemplazo pasan a spares y son los buffers de los hijos siguientes.
+    // Pasado el calentamiento una generacion no pide arreglos nuevos.
+    private Individual[] spares = new Individual[16];
+    private int spareCount;
+    private final List<Individual> children = new ArrayList<>();
+    private Individual[] combined = new Individual[0];
+    private Individual[] mergeBuffer = new Individual[0];
+    private final List<Individual> outbox = new ArrayList<>(); // copias para migrar
+
+    // buffers del camino paralelo (se crean en la primera generacion)
+    private Individual[] parent1s, parent2s, slots, kidsBuf;
+    private int[] codes;
+    private Worker[] pairWorkers;
+    private ClaimTable claims;
+    private volatile boolean dedupLost;
+
+    public GeneticSolver(int size, List<Piece> pieces, int populationSize, int childrenCount, long maxMs) {
+        this(size, PieceSet.of(pieces), populationSize, childrenCount, maxMs);
+    }
+
+    public GeneticSolver(int size, PieceSet set, int populationSize, int childrenCount, long maxMs) {
+        this(size, set, populationSize, childrenCount, maxMs, defaultSeed(size));
+    }
+
+    public GeneticSolver(int size, PieceSet set, int populationSize, int childrenCount, long maxMs, long seed) {
+        this.size = size;
+        this.n = size * size;
+        this.set = set;
+        this.maxFitness = FitnessEvaluator.getMaxFitness(size);
+        this.populationSize = populationSize;
+        this.childrenCount = childrenCount;
+        this.seed = seed;
+        this.main = new Worker(new Random(seed));
+        this.deadlineNano = System.nanoTime() + (maxMs * 1_000_000L);
+        this.compact = (size > 5);
+        setCrossover(Crossover.parse(GA_CROSSOVER));
+        if (GA_GREEDY_SEED > 0 && indice == null) indice = new CandidateIndex(set);
+    }
+
+    static long defaultSeed(int size) {
+        return 999 + size + size * size;
+    }
+
+    void setCancel(AtomicBoolean cancel) {
+        this.cancel = cancel;
+    }
+
+    // la cancelacion del portafolio corta igual que el deadline
+    private boolean timedOut() {
+        return System.nanoTime() > deadlineNano || (cancel != null && cancel.get());
+    }
+
+    public Metrics solveAndReport() {
+        MemoryMeter memory = MemoryMeter.start();
+        long start = System.nanoTime();
+
+        // 1) poblacion inicial (sin repetidos)
+        initialize();
+        FitnessTrace trace = new FitnessTrace(start);
+        trace.record(0, population.get(0).fitness);
+
+        // 2) generaciones
+        if (GA_RUN_TO_BUDGET) {
+            runToBudget(trace);
+        } else {
+            for (int gen = 1; gen <= GA_GENERATIONS; gen++) {
+                if (timedOut()) {
+                    trace.stoppedBy("timeout");
+                    break;
+                }
+                boolean perfect = runGeneration(gen);
+                trace.record(gen, population.get(0).fitness);
+                if (perfect) {
+                    trace.stoppedBy("objetivo");
+                    break;
+                }
+            }
+        }
+
+        Metrics m = report(population, start, memory, getComparisons(), getAssignments(), timedOut());
+        m.trace = trace;
+        return m;
+    }
+
+    // Hasta el deadline, el objetivo o GA_STAGNATION_GENERATIONS sin mejorar.
+    // La salida por generacion se imprime solo en las primeras GA_GENERATIONS.
+    private void runToBudget(FitnessTrace trace) {
+        int target = targetFitness(maxFitness);
+        for (int gen = 1; ; gen++) {
+            if (timedOut()) {
+                trace.stoppedBy("deadline");
+                return;
+            }
+            if (gen == GA_GENERATIONS + 1 && verbose) {
+                if (EventLog.enabled(EventLog.Level.SUMMARY)) {
+                    EventLog.text("\n[GENETIC] (desde aqui se omite la salida por generacion)");
+                }
+                verbose = false;
+            }
+            runGeneration(gen);
+            int best = population.get(0).fitness;
+            trace.record(gen, best);
+            if (best >= target) {
+                trace.stoppedBy("objetivo");
+                return;
+            }
+            if (trace.stagnated(GA_STAGNATION_GENERATIONS)) {
+                trace.stoppedBy("estancado");
+                return;
+            }
+        }
+    }
+
+    // Portafolio: sin imprimir, generaciones hasta el fitness maximo, el deadline
+    // o la cancelacion. No corta por estancamiento: seguir mejorando sirve si
+    // al deadline nadie resolvio.
+    boolean evolveToSolution() {
+        verbose = false;
+        initialize();
+        if (population.isEmpty()) return false;
+        if (population.get(0).fitness == maxFitness) return true;
+        for (int gen = 1; !timedOut(); gen++) {
+            if (runGeneration(gen)) return true;
+        }
+        return false;
+    }
+
+    // mejor individuo como tablero compacto (vacio si no llego a crear la poblacion)
+    CompactBoard bestBoard() {
+        CompactBoard tablero = new CompactBoard(size, n);
+        if (population == null || population.isEmpty()) return tablero;
+        int[] perm = population.get(0).perm;
+        for (int cell = 0; cell < n; cell++) tablero.place(perm[cell], cell);
+        return tablero;
+    }
+
+    static int targetFitness(int maxFitness) {
+        return (GA_TARGET_FITNESS > 0) ? Math.min(GA_TARGET_FITNESS, maxFitness) : maxFitness;
+    }
+
+    void initialize() {
+        population = createInitialPopulation(main);
+        for (Individual ind : population) {
+            main.nextSample();
+            ind.fitness = fitnessOf(ind.perm, main);
+            if (main.counting()) main.assignments++;
+        }
+        sortByFitnessDesc(population);
+    }
+
+    // Una generacion completa; devuelve true si se llego al fitness maximo
+    boolean runGeneration(int gen) {
+        if (verbose && EventLog.enabled(EventLog.Level.SUMMARY)) {
+            EventLog.generation(gen, population.get(0).fitness, maxFitness);
+        }
+
+        List<Individual> children = (pool != null) ? produceChildrenParallel(gen) : produceChildren();
+
+        // reemplazo: padres + hijos, quedan los mejores populationSize y el
+        // resto vuelve a la arena
+        int total = population.size() + children.size();
+        ensureCombined(total);
+        int k = 0;
+        for (Individual ind : population) combined[k++] = ind;
+        for (Individual ind : children) combined[k++] = ind;
+
+        sortByFitnessDesc(combined, total);
+        int keep = Math.min(populationSize, total);
+        population.clear();
+        for (int i = 0; i < keep; i++) population.add(combined[i]);
+        for (int i = keep; i < total; i++) releaseSpare(combined[i]);
+
+        if (main.counting()) main.comparisons++;
+        if (population.get(0).fitness == maxFitness) {
+            if (verbose && EventLog.enabled(EventLog.Level.SUMMARY)) {
+                EventLog.text("[GENETIC] Solucion perfecta encontrada (fitness maximo).");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private List<Individual> produceChildren() {
+        children.clear();
+
+        // evitar cromosomas repetidos en la misma generacion
+        seen.clear();
+        for (Individual p : population) seen.add(p.hash);
+
+        int produced = 0;
+        int crossPrintLimit = crossPrintLimit();
+        int printed = 0;
+
+        while (produced < childrenCount && !timedOut()) {
+            main.nextSample();
+            Individual parent1 = tournamentSelect(population, 3, main);
+            Individual parent2 = tournamentSelect(population, 3, main);
+
+            Individual kid1 = takeSpare();
+            Individual kid2 = takeSpare();
+            crossover(parent1, parent2, kid1, kid2, main);
+
+            // evaluar antes de imprimir (asi NO sale -1)
+            kid1.fitness = fitnessOf(kid1.perm, main);
+            kid2.fitness = fitnessOf(kid2.perm, main);
+            if (main.counting()) main.assignments += 2;
+
+            // mejora local ligera (hace al genetico MUCHO mas estable en 3x3 y 5x5)
+            localImprove(kid1, main);
+            localImprove(kid2, main);
+
+            // mutacion + salida de duplicados
+            resolveDuplicateWithMutationIfNeeded(kid1, seen, main);
+            resolveDuplicateWithMutationIfNeeded(kid2, seen, main);
+
+            if (printed < crossPrintLimit) {
+                printCross(parent1, parent2, kid1, kid2);
+                printed++;
+                if (printed == crossPrintLimit) {
+                    EventLog.text("[CRUCE] (se omiten mas cruces en esta generacion para no saturar la salida)");
+                }
+            }
+
+            children.add(kid1);
+            children.add(kid2);
+            produced += 2;
+        }
+        return children;
+    }
+
+    private int crossPrintLimit() {
+        return (verbose && EventLog.enabled(EventLog.Level.TRACE)) ? (compact ? 5 : 15) : 0;
+    }
+
+    // ---- generacion en paralelo ----
+    // 1) cada par (seleccion + OX + mejora local + mutacion por tasa) se
+    //    produce en paralelo con su propio Worker;
+    // 2) cada hijo reclama su hash en un ClaimTable: gana el codigo menor
+    //    (padres < ronda 0 < ronda 1 ...; dentro de la ronda, el indice menor);
+    // 3) los que perdieron mutan a la fuerza y reclaman de nuevo (hasta 6 rondas,
+    //    igual que los intentos del camino secuencial).
+    // Como el ganador de cada hash no depende del orden de llegada, el
+    // resultado es el mismo con cualquier cantidad de hilos.
+    private static final int DEDUP_ROUNDS = 6;
+    private static final int PAIRS_PER_TASK = 4;
+
+    private List<Individual> produceChildrenParallel(int gen) {
+        final int pairs = (childrenCount + 1) / 2;
+        final int kidsTotal = pairs * 2;
+
+        if (pairWorkers == null) {
+            parent1s = new Individual[pairs];
+            parent2s = new Individual[pairs];
+            slots = new Individual[kidsTotal];
+            kidsBuf = new Individual[kidsTotal];
+            codes = new int[kidsTotal];
+            pairWorkers = new Worker[pairs];
+            claims = new ClaimTable(populationSize + kidsTotal * (DEDUP_ROUNDS + 1));
+        }
+        final Individual[] kids = kidsBuf;
+        final Worker[] workers = pairWorkers;
+        Arrays.fill(kids, null);
+        // los buffers de los hijos se reparten antes, desde este hilo
+        for (int i = 0; i < kidsTotal; i++) slots[i] = takeSpare();
+
+        claims.clear();
+        for (Individual p : population) claims.claim(p.hash, -1);
+
+        runPairs(pairs, k -> {
+            RandomGenerator rand = new SplittableRandom(streamSeed(gen, k));
+            Worker w = workers[k];
+            if (w == null) workers[k] = w = new Worker(rand);
+            else w.reset(rand);
+            if (timedOut()) return;
+            w.nextSample();
+
+            Individual parent1 = tournamentSelect(population, 3, w);
+            Individual parent2 = tournamentSelect(population, 3, w);
+            parent1s[k] = parent1;
+            parent2s[k] = parent2;
+
+            crossover(parent1, parent2, slots[2 * k], slots[2 * k + 1], w);
+            for (int s = 0; s < 2; s++) {
+                int idx = 2 * k + s;
+                Individual kid = slots[idx];
+                kid.fitness = fitnessOf(kid.perm, w);
+                if (w.counting()) w.assignments++;
+                localImprove(kid, w);
+
+                if (w.counting()) w.comparisons++;
+                if (w.rand.nextDouble() < mutationRate()) mutate(kid, false, w);
+
+                kids[idx] = kid;
+                codes[idx] = idx;
+                claims.claim(kid.hash, idx);
+            }
+        });
+
+        for (int round = 1; round <= DEDUP_ROUNDS && !timedOut(); round++) {
+            final int code = round * kidsTotal;
+            dedupLost = false;
+            runPairs(pairs, k -> {
+                Worker w = workers[k];
+                w.nextSample();
+                for (int s = 0; s < 2; s++) {
+                    int idx = 2 * k + s;
+                    Individual kid = kids[idx];
+                    if (kid == null) continue;
+
+                    if (w.counting()) w.comparisons++;
+                    if (claims.owner(kid.hash) == codes[idx]) continue;
+
+                    dedupLost = true;
+                    mutate(kid, true, w);
+                    codes[idx] = code + idx;
+                    claims.claim(kid.hash, codes[idx]);
+                }
+            });
+            if (!dedupLost) break;
+        }
+
+        children.clear();
+        for (int k = 0; k < pairs; k++) {
+            Worker w = workers[k];
+            main.comparisons += w.comparisons;
+            main.assignments += w.assignments;
+            if (kids[2 * k] != null) {
+                children.add(kids[2 * k]);
+                children.add(kids[2 * k + 1]);
+            } else { // el par no llego a producirse (timeout)
+                releaseSpare(slots[2 * k]);
+                releaseSpare(slots[2 * k + 1]);
+            }
+        }
+
+        // salida en orden de par, como el camino secuencial: las mutaciones
+        // del par y despues su cruce (con los hijos ya sin duplicados)
+        int crossPrintLimit = crossPrintLimit();
+        int limit = chromosomeLimit();
+        for (int k = 0; k < pairs; k++) {
+            Worker w = workers[k];
+            for (int m = 0; m < w.mutations; m++) {
+                EventLog.mutation(w.before[m], w.fitBefore[m], w.after[m], w.fitAfter[m], limit, limit < n, compact);
+            }
+            if (k < crossPrintLimit && kids[2 * k] != null) {
+                printCross(parent1s[k], parent2s[k], kids[2 * k], kids[2 * k + 1]);
+                if (k == crossPrintLimit - 1) {
+                    EventLog.text("[CRUCE] (se omiten mas cruces en esta generacion para no saturar la salida)");
+                }
+            }
+        }
+        return children;
+    }
+
+    // Reparte los pares [0, pairs) en tareas del pool (work stealing)
+    private void runPairs(int pairs, java.util.function.IntConsumer body) {
+        RecursiveAction all = new PairRange(0, pairs, body);
+        if (ForkJoinTask.inForkJoinPool()) all.invoke(); // ya dentro del pool (p.ej. una isla)
+        else pool.invoke(all);
+    }
+
+    @SuppressWarnings("serial") // las tareas nunca se serializan
+    private static final class PairRange extends RecursiveAction {
+        private final int from, to;
+        private final java.util.function.IntConsumer body;
+
+        PairRange(int from, int to, java.util.function.IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAIRS_PER_TASK) {
+                for (int k = from; k < to; k++) body.accept(k);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PairRange(from, mid, body), new PairRange(mid, to, body));
+        }
+    }
+
+    // Filtro de duplicados concurrente: tabla abierta hash -> duenio, donde
+    // el duenio es el minimo codigo que reclamo ese hash (independiente del
+    // orden de llegada). Solo se inserta, nunca se borra.
+    static final class ClaimTable {
+        private static final long EMPTY = 0L;
+        private static final long ZERO_KEY = 0x9E3779B97F4A7C15L; // el hash 0 se guarda con este valor
+        static final int NONE = Integer.MAX_VALUE;
+
+        private final AtomicLongArray keys;
+        private final AtomicIntegerArray owners;
+        private final int mask;
+
+        ClaimTable(int expected) {
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            this.keys = new AtomicLongArray(cap);
+            this.owners = new AtomicIntegerArray(cap);
+            this.mask = cap - 1;
+            for (int i = 0; i < cap; i++) owners.set(i, NONE);
+        }
+
+        // se reusa la misma tabla en cada generacion
+        void clear() {
+            for (int i = 0; i < keys.length(); i++) {
+                keys.set(i, EMPTY);
+                owners.set(i, NONE);
+            }
+        }
+
+        void claim(long hash, int code) {
+            long key = (hash == EMPTY) ? ZERO_KEY : hash;
+            int i = (int) mix64(key) & mask;
+            while (true) {
+                long k = keys.get(i);
+                if (k == EMPTY) {
+                    if (keys.compareAndSet(i, EMPTY, key)) k = key;
+                    else k = keys.get(i);
+                }
+                if (k == key) {
+                    owners.accumulateAndGet(i, code, Math::min);
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        int owner(long hash) {
+            long key = (hash == EMPTY) ? ZERO_KEY : hash;
+            int i = (int) mix64(key) & mask;
+            while (true) {
+                long k = keys.get(i);
+                if (k == EMPTY) return NONE;
+                if (k == key) return owners.get(i);
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    // Conjunto de long con direccionamiento abierto (sondeo lineal), sin
+    // boxing. clear() deja la tabla lista para la siguiente generacion sin
+    // soltar memoria; remove usa borrado por corrimiento hacia atras.
+    static final class LongSet {
+        private static final long EMPTY = 0L;
+
+        private long[] keys;
+        private boolean hasZero; // el 0 no cabe en la tabla (es la marca de vacio)
+        private int count;
+        private int mask;
+
+        LongSet(int expected) {
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            this.keys = new long[cap];
+            this.mask = cap - 1;
+        }
+
+        boolean contains(long key) {
+            if (key == EMPTY) return hasZero;
+            int i = (int) mix64(key) & mask;
+            while (true) {
+                long k = keys[i];
+                if (k == EMPTY) return false;
+                if (k == key) return true;
+                i = (i + 1) & mask;
+            }
+        }
+
+        // true si no estaba
+        boolean add(long key) {
+            if (key == EMPTY) {
+                if (hasZero) return false;
+                hasZero = true;
+                return true;
+            }
+            int i = (int) mix64(key) & mask;
+            while (true) {
+                long k = keys[i];
+                if (k == EMPTY) break;
+                if (k == key) return false;
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            if (++count * 2 > keys.length) grow();
+            return true;
+        }
+
+        void remove(long key) {
+            if (key == EMPTY) {
+                hasZero = false;
+                return;
+            }
+            int i = (int) mix64(key) & mask;
+            while (true) {
+                long k = keys[i];
+                if (k == EMPTY) return;
+                if (k == key) break;
+                i = (i + 1) & mask;
+            }
+            // corre hacia atras los que quedarian inalcanzables
+            int hole = i;
+            int j = (i + 1) & mask;
+            while (keys[j] != EMPTY) {
+                int home = (int) mix64(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    hole = j;
+                }
+                j = (j + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            count--;
+        }
+
+        void clear() {
+            if (count > 0) Arrays.fill(keys, EMPTY);
+            count = 0;
+            hasZero = false;
+        }
+
+        int size() {
+            return hasZero ? count + 1 : count;
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            mask = keys.length - 1;
+            for (long k : old) {
+                if (k == EMPTY) continue;
+                int i = (int) mix64(k) & mask;
+                while (keys[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = k;
+            }
+        }
+    }
+
+    private long streamSeed(int gen, int pair) {
+        return mix64(seed + 0x9E3779B97F4A7C15L * ((long) gen * 1_000_003L + pair));
+    }
+
+    // ---- migracion (modelo de islas) ----
+    // copias de los k mejores (la poblacion siempre queda ordenada desc);
+    // las copias viven en outbox y se reescriben en la migracion siguiente
+    List<Individual> topIndividuals(int k) {
+        int count = Math.min(k, population.size());
+        while (outbox.size() > count) outbox.remove(outbox.size() - 1);
+        for (int i = 0; i < count; i++) {
+            if (i == outbox.size()) {
+                Individual copy = new Individual();
+                copy.perm = new int[n];
+                outbox.add(copy);
+            }
+            copyInto(population.get(i), outbox.get(i));
+        }
+        return outbox;
+    }
+
+    // los inmigrantes reemplazan a los peores, sin meter repetidos; se copian
+    // sobre el individuo reemplazado, que sigue siendo de esta isla
+    void receiveMigrants(List<Individual> migrants) {
+        LongSet present = seen;
+        present.clear();
+        for (Individual ind : population) present.add(ind.hash);
+
+        int worst = population.size() - 1;
+        for (Individual m : migrants) {
+            if (main.counting()) main.comparisons++;
+            if (worst < 0 || present.contains(m.hash)) continue;
+            if (m.fitness <= population.get(worst).fitness) continue;
+            present.remove(population.get(worst).hash);
+            copyInto(m, population.get(worst));
+            present.add(m.hash);
+            if (main.counting()) main.assignments++;
+            worst--;
+        }
+
+        int total = population.size();
+        ensureCombined(total);
+        for (int i = 0; i < total; i++) combined[i] = population.get(i);
+        sortByFitnessDesc(combined, total);
+        for (int i = 0; i < total; i++) population.set(i, combined[i]);
+    }
+
+    private void copyInto(Individual from, Individual to) {
+        System.arraycopy(from.perm, 0, to.perm, 0, n);
+        to.fitness = from.fitness;
+        to.hash = from.hash;
+    }
+
+    private Individual takeSpare() {
+        if (spareCount == 0) { // calentamiento: la arena todavia no tiene buffers libres
+            Individual ind = new Individual();
+            ind.perm = new int[n];
+            return ind;
+        }
+        return spares[--spareCount];
+    }
+
+    private void releaseSpare(Individual ind) {
+        if (spareCount == spares.length) spares = Arrays.copyOf(spares, spareCount * 2);
+        spares[spareCount++] = ind;
+    }
+
+    private void ensureCombined(int total) {
+        if (combined.length >= total) return;
+        combined = new Individual[total];
+        mergeBuffer = new Individual[total];
+    }
+
+    void setVerbose(boolean verbose) { this.verbose = verbose; }
+    void setPool(ForkJoinPool pool) { this.pool = pool; }
+
+    void setCrossover(Crossover crossover) {
+        this.crossover = crossover;
+        if (crossover == Crossover.EDGE && indice == null) indice = new CandidateIndex(set);
+    }
+    List<Individual> getPopulation() { return population; }
+    long getComparisons() { return Counters.scale(main.comparisons); }
+    long getAssignments() { return Counters.scale(main.assignments); }
+    boolean isTimedOut() { return timedOut(); }
+
+    // Top 3 + tablero del mejor + Metrics (lo usa tambien el modelo de islas)
+    Metrics report(List<Individual> finalPopulation, long start, MemoryMeter memory,
+                   long comps, long assigns, boolean wasTimedOut) {
+        Metrics m = new Metrics();
+
+        sortByFitnessDesc(finalPopulation);
+
+        // la impresion queda fuera de la medicion
+        long end = System.nanoTime();
+        memory.stop(m);
+        EventLog.flush();
 
         m.timeMs = (end - start) / 1_000_000L;
-        m.memoryBytes = Math.max(0, memAfter - memBefore);
-        m.comparisons = comparisons;
-        m.assignments = assignments;
-        m.bestFitness = population.get(0).fitness;
+        m.comparisons = comps;
+        m.assignments = assigns;
+        m.bestFitness = finalPopulation.get(0).fitness;
         m.solved = (m.bestFitness == maxFitness);
-        m.note = timedOut() ? "timeout" : "ok";
+        m.note = (wasTimedOut ? "timeout" : "ok") + ", cruce " + crossover;
+
+        if (!EventLog.enabled(EventLog.Level.SUMMARY)) return m;
+
+        System.out.println("\n[GENETIC] ===== TOP 3 Poblaciones Finales =====");
+        for (int i = 0; i < Math.min(3, finalPopulation.size()); i++) {
+            System.out.println((i + 1) + ") Fitness = " + finalPopulation.get(i).fitness + " / " + maxFitness
+                    + "  Cromosoma=" + chromosomeToString(finalPopulation.get(i).perm));
+        }
 
         System.out.println("[GENETIC] Mejor solucion (tablero) - fitness " + m.bestFitness + " / " + maxFitness);
-        if (size <= 10) bestBoard.print();
+        if (size <= 10) buildBoardFromPerm(finalPopulation.get(0).perm).print();
         else System.out.println("[GENETIC] (Tablero omitido por tamano, modo compacto)");
 
         return m;
     }
 
     // ---- poblacion inicial ----
-    private List<Individual> createInitialPopulation() {
+    private List<Individual> createInitialPopulation(Worker w) {
         List<Individual> pop = new ArrayList<>();
-        Set<Long> seen = new HashSet<>();
+        LongSet seen = new LongSet(populationSize);
+        // los primeros greedy salen de la colocacion voraz (con un tope de
+        // intentos por si en tableros chicos se repiten)
+        int greedy = (int) Math.round(populationSize * Math.min(1.0, GA_GREEDY_SEED));
 
         int attempts = 0;
         while (pop.size() < populationSize && attempts < populationSize * 400 && !timedOut()) {
             attempts++;
-            int[] perm = randomPermutation(n, rand);
+            boolean voraz = pop.size() < greedy && attempts <= greedy * 4;
+            int[] perm = voraz ? greedyPermutation(w) : randomPermutation(n, w.rand);
             long h = hashPerm(perm);
 
-            comparisons++;
-            if (!seen.contains(h)) {
+            if (w.counting()) w.comparisons++;
+            if (seen.add(h)) {
                 Individual ind = new Individual();
                 ind.perm = perm;
                 ind.hash = h;
                 ind.fitness = -1;
                 pop.add(ind);
-                seen.add(h);
-                assignments += 4;
+                if (w.counting()) w.assignments += 4;
             }
         }
         return pop;
     }
 
+    // ---- semilla voraz ----
+    // Por filas, como AvanceRapido pero sin volver atras: en cada celda una
+    // pieza libre que calce con izquierda y arriba, si no con una de las dos,
+    // y si no cualquiera libre. Entre las que sirven se elige una al azar
+    // (uniforme), asi que llamadas distintas arman tableros distintos.
+    private int[] greedyPermutation(Worker w) {
+        final int[] right = set.right, bottom = set.bottom;
+        final int words = indice.words;
+        long[] placed = w.placedBits(words);
+        int[] perm = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            int c = i % size;
+            long[] izq = (c > 0) ? indice.porIzquierda : null;
+            long[] arr = (i >= size) ? indice.porArriba : null;
+            int baseIzq = (c > 0) ? right[perm[i - 1]] * words : 0;
+            int baseArr = (i >= size) ? bottom[perm[i - size]] * words : 0;
+
+            int p = -1;
+            if (izq != null && arr != null) p = freePiece(izq, baseIzq, arr, baseArr, placed, w);
+            if (p < 0 && izq != null) p = freePiece(izq, baseIzq, null, 0, placed, w);
+            if (p < 0 && arr != null) p = freePiece(arr, baseArr, null, 0, placed, w);
+            if (p < 0) p = freePiece(indice.todas, 0, null, 0, placed, w);
+
+            perm[i] = p;
+            placed[p >>> 6] |= 1L << p;
+            if (w.counting()) w.assignments++;
+        }
+        return perm;
+    }
+
+    // una pieza libre al azar entre las de a (y b si no es null): se cuentan
+    // los bits de todas las palabras, se sortea el r-esimo y se lo busca
+    private int freePiece(long[] a, int baseA, long[] b, int baseB, long[] placed, Worker w) {
+        final int words = indice.words;
+        int total = 0;
+        for (int wi = 0; wi < words; wi++) {
+            total += Long.bitCount(libres(a, baseA, b, baseB, placed, wi));
+            if (w.counting()) w.comparisons++;
+        }
+        if (total == 0) return -1;
+
+        int r = w.rand.nextInt(total);
+        for (int wi = 0; ; wi++) {
+            long libres = libres(a, baseA, b, baseB, placed, wi);
+            int count = Long.bitCount(libres);
+            if (r >= count) {
+                r -= count;
+                continue;
+            }
+            for (; r > 0; r--) libres &= libres - 1; // descarta los r bits mas bajos
+            return (wi << 6) + Long.numberOfTrailingZeros(libres);
+        }
+    }
+
+    private static long libres(long[] a, int baseA, long[] b, int baseB, long[] placed, int wi) {
+        long libres = a[baseA + wi] & ~placed[wi];
+        return (b != null) ? libres & b[baseB + wi] : libres;
+    }
+
     // ---- fitness (cuenta lados que calzan) ----
-    private int fitnessOf(int[] perm) {
+    private int fitnessOf(int[] perm, Worker w) {
+        final int[] right = set.right, left = set.left, bottom = set.bottom, top = set.top;
         int fit = 0;
         for (int r = 0; r < size; r++) {
             int base = r * size;
             for (int c = 0; c < size; c++) {
                 int idx = base + c;
-                Piece p = pieces.get(perm[idx]);
+                int p = perm[idx];
 
                 // derecha
-                comparisons++;
+                if (w.counting()) w.comparisons++;
                 if (c < size - 1) {
-                    Piece pr = pieces.get(perm[idx + 1]);
-                    comparisons++;
-                    if (p.right == pr.left) fit++;
+                    if (w.counting()) w.comparisons++;
+                    if (right[p] == left[perm[idx + 1]]) fit++;
                 }
                 // abajo
-                comparisons++;
+                if (w.counting()) w.comparisons++;
                 if (r < size - 1) {
-                    Piece pb = pieces.get(perm[idx + size]);
-                    comparisons++;
-                    if (p.bottom == pb.top) fit++;
+                    if (w.counting()) w.comparisons++;
+                    if (bottom[p] == top[perm[idx + size]]) fit++;
                 }
             }
         }
         return fit;
     }
 
+    // ---- fitness incremental ----
+    // Un swap solo cambia los bordes que tocan las dos celdas (a lo mas 8),
+    // asi que basta con puntuar esos bordes antes y despues del swap.
+    private int edgesAround(int[] perm, int cell, Worker w) {
+        int r = cell / size;
+        int c = cell % size;
+        int p = perm[cell];
+        int fit = 0;
+
+        if (w.counting()) w.comparisons += 4;
+        if (c > 0 && set.right[perm[cell - 1]] == set.left[p]) fit++;
+        if (c < size - 1 && set.right[p] == set.left[perm[cell + 1]]) fit++;
+        if (r > 0 && set.bottom[perm[cell - size]] == set.top[p]) fit++;
+        if (r < size - 1 && set.bottom[p] == set.top[perm[cell + size]]) fit++;
+        return fit;
+    }
+
+    // matches de los bordes que tocan i o j (el borde entre ambos se cuenta una vez)
+    private int localScore(int[] perm, int i, int j, Worker w) {
+        int fit = edgesAround(perm, i, w) + edgesAround(perm, j, w);
+
+        int lo = Math.min(i, j);
+        int hi = Math.max(i, j);
+        if (w.counting()) w.comparisons++;
+        if (hi - lo == 1 && hi % size != 0) {
+            if (set.right[perm[lo]] == set.left[perm[hi]]) fit--;
+        } else if (hi - lo == size) {
+            if (set.bottom[perm[lo]] == set.top[perm[hi]]) fit--;
+        }
+        return fit;
+    }
+
+    // cambio de fitness si se intercambian i y j (deja perm sin cambios)
+    private int swapDelta(int[] perm, int i, int j, Worker w) {
+        if (i == j) return 0;
+        int before = localScore(perm, i, j, w);
+        swap(perm, i, j);
+        int after = localScore(perm, i, j, w);
+        swap(perm, i, j);
+        return after - before;
+    }
+
+    private static void swap(int[] perm, int i, int j) {
+        int tmp = perm[i];
+        perm[i] = perm[j];
+        perm[j] = tmp;
+    }
+
     private Board buildBoardFromPerm(int[] perm) {
         Board b = new Board(size);
         int k = 0;
         for (int r = 0; r < size; r++) {
             for (int c = 0; c < size; c++) {
-                b.place(pieces.get(perm[k]), r, c);
+                b.place(set.toPiece(perm[k]), r, c);
                 k++;
             }
         }
@@ -706,281 +4033,1367 @@ static class GeneticSolver {
     }
 
     // ---- seleccion ----
-    private Individual tournamentSelect(List<Individual> pop, int k) {
+    private Individual tournamentSelect(List<Individual> pop, int k, Worker w) {
         Individual best = null;
         for (int i = 0; i < k; i++) {
-            int idx = rand.nextInt(pop.size());
+            int idx = w.rand.nextInt(pop.size());
             Individual cand = pop.get(idx);
-            comparisons++;
+            if (w.counting()) w.comparisons++;
             if (best == null || cand.fitness > best.fitness) {
                 best = cand;
-                assignments++;
+                if (w.counting()) w.assignments++;
             }
         }
         return best;
     }
 
+    private void crossover(Individual p1, Individual p2, Individual k1, Individual k2, Worker w) {
+        if (crossover == Crossover.EDGE) edgeCrossover(p1, p2, k1, k2, w);
+        else orderCrossoverOX(p1, p2, k1, k2, w);
+    }
+
     // ---- cruce valido: Order Crossover (OX) ----
-    private Individual[] orderCrossoverOX(Individual p1, Individual p2) {
+    // escribe los hijos sobre k1 y k2 (buffers de la arena)
+    private void orderCrossoverOX(Individual p1, Individual p2, Individual k1, Individual k2, Worker w) {
         int[] a = p1.perm;
         int[] b = p2.perm;
 
-        int cut1 = rand.nextInt(n);
-        int cut2 = rand.nextInt(n);
-        comparisons++;
+        int cut1 = w.rand.nextInt(n);
+        int cut2 = w.rand.nextInt(n);
+        if (w.counting()) w.comparisons++;
         if (cut1 > cut2) {
             int t = cut1;
             cut1 = cut2;
             cut2 = t;
-            assignments += 3;
+            if (w.counting()) w.assignments += 3;
         }
 
-        int[] child1 = new int[n];
-        int[] child2 = new int[n];
-        Arrays.fill(child1, -1);
-        Arrays.fill(child2, -1);
+        int[] child1 = k1.perm;
+        int[] child2 = k2.perm;
 
         for (int i = cut1; i <= cut2; i++) {
             child1[i] = a[i];
             child2[i] = b[i];
-            assignments += 2;
+            if (w.counting()) w.assignments += 2;
+        }
+
+        fillOX(child1, b, cut1, cut2, w);
+        fillOX(child2, a, cut1, cut2, w);
+
+        k1.hash = hashPerm(child1);
+        k1.fitness = -1;
+        k2.hash = hashPerm(child2);
+        k2.fitness = -1;
+
+        if (w.counting()) w.assignments += 6;
+    }
+
+    // [cut1, cut2] ya esta copiado; los huecos son cut2+1 .. cut1-1 (con
+    // vuelta) y se llenan en ese orden, asi que no hace falta marcarlos con -1
+    // ni buscar el siguiente: basta con avanzar pos.
+    private void fillOX(int[] child, int[] donor, int cut1, int cut2, Worker w) {
+        int stamp = w.nextStamp(n);
+        int[] used = w.used;
+        for (int i = cut1; i <= cut2; i++) used[child[i]] = stamp;
+        if (w.counting()) w.comparisons += n; // revisar el hijo entero
+
+        int pos = (cut2 + 1) % n;
+        int placed = 0;
+        for (int i = 0; i < n; i++) {
+            int gene = donor[(cut2 + 1 + i) % n];
+            if (w.counting()) w.comparisons++;
+            if (used[gene] != stamp) {
+                if (placed++ > 0 && w.counting()) w.comparisons++; // paso al siguiente hueco
+                child[pos] = gene;
+                pos = (pos + 1) % n;
+                used[gene] = stamp;
+                if (w.counting()) w.assignments += 2;
+            }
+        }
+    }
+
+    // ---- cruce por bordes (EDGE) ----
+    // Cada hijo toma de su padre principal las piezas que calzan con algun
+    // vecino dentro de una franja de filas al azar, y del otro padre las que
+    // calzan fuera de la franja (si la pieza sigue libre), asi pasan bloques
+    // ya armados de los dos. Los huecos se llenan por filas con una pieza
+    // libre que calce con el vecino de la izquierda y/o de arriba (indice de
+    // bordes); si no hay, la siguiente libre en el orden del principal.
+    private void edgeCrossover(Individual p1, Individual p2, Individual k1, Individual k2, Worker w) {
+        int row1 = w.rand.nextInt(size);
+        int row2 = w.rand.nextInt(size);
+        if (w.counting()) w.comparisons++;
+        if (row1 > row2) {
+            int t = row1;
+            row1 = row2;
+            row2 = t;
+            if (w.counting()) w.assignments += 3;
+        }
+
+        edgeChild(p1.perm, p2.perm, row1 * size, (row2 + 1) * size, k1.perm, w);
+        edgeChild(p2.perm, p1.perm, row1 * size, (row2 + 1) * size, k2.perm, w);
+
+        k1.hash = hashPerm(k1.perm);
+        k1.fitness = -1;
+        k2.hash = hashPerm(k2.perm);
+        k2.fitness = -1;
+
+        if (w.counting()) w.assignments += 6;
+    }
+
+    private void edgeChild(int[] principal, int[] other, int bandFrom, int bandTo, int[] child, Worker w) {
+        final int[] right = set.right, left = set.left, bottom = set.bottom, top = set.top;
+        final int values = set.maxValue + 1;
+        long[] placed = w.placedBits(indice.words);
+        // cursores[v] / cursores[values + v]: primera palabra que puede tener
+        // una pieza libre con left == v / top == v (las piezas solo se ocupan)
+        int[] cursores = w.cursors(2 * values);
+
+        Arrays.fill(child, -1);
+        for (int i = bandFrom; i < bandTo; i++) {
+            if (!calza(principal, i, w)) continue;
+            child[i] = principal[i];
+            placed[principal[i] >>> 6] |= 1L << principal[i];
+            if (w.counting()) w.assignments += 2;
+        }
+        for (int i = 0; i < n; i++) {
+            if (i == bandFrom) i = bandTo;
+            if (i >= n) break;
+            int p = other[i];
+            if (w.counting()) w.comparisons++;
+            if ((placed[p >>> 6] & (1L << p)) != 0 || !calza(other, i, w)) continue;
+            child[i] = p;
+            placed[p >>> 6] |= 1L << p;
+            if (w.counting()) w.assignments += 2;
+        }
+
+        int siguiente = 0; // cursor en principal para el caso sin calce
+        for (int i = 0; i < n; i++) {
+            if (w.counting()) w.comparisons++;
+            if (child[i] >= 0) continue;
+
+            int p = -1;
+            int c = i % size;
+            if (c > 0) p = primeraLibre(indice.porIzquierda, right[child[i - 1]], cursores, 0, placed, w);
+            if (i >= size) {
+                int wantTop = bottom[child[i - size]];
+                if (w.counting()) w.comparisons++;
+                if (p < 0 || top[p] != wantTop) {
+                    int q = primeraLibre(indice.porArriba, wantTop, cursores, values, placed, w);
+                    // la de arriba se prefiere si no hay por izquierda o si calza con las dos
+                    if (w.counting()) w.comparisons++;
+                    if (q >= 0 && (p < 0 || left[q] == right[child[i - 1]])) p = q;
+                }
+            }
+            if (p < 0) {
+                while ((placed[principal[siguiente] >>> 6] & (1L << principal[siguiente])) != 0) {
+                    siguiente++;
+                    if (w.counting()) w.comparisons++;
+                }
+                p = principal[siguiente];
+            }
+
+            child[i] = p;
+            placed[p >>> 6] |= 1L << p;
+            if (w.counting()) w.assignments += 2;
+        }
+    }
+
+    // la pieza de perm[i] calza con algun vecino en perm
+    private boolean calza(int[] perm, int i, Worker w) {
+        final int[] right = set.right, left = set.left, bottom = set.bottom, top = set.top;
+        int p = perm[i];
+        int c = i % size;
+        if (w.counting()) w.comparisons += 4;
+        return (c > 0 && right[perm[i - 1]] == left[p])
+                || (c < size - 1 && right[p] == left[perm[i + 1]])
+                || (i >= size && bottom[perm[i - size]] == top[p])
+                || (i + size < n && bottom[p] == top[perm[i + size]]);
+    }
+
+    // primera pieza libre del bitset value del indice; el cursor avanza sobre
+    // las palabras agotadas, que no vuelven a tener piezas libres
+    private int primeraLibre(long[] bits, int value, int[] cursores, int offset, long[] placed, Worker w) {
+        final int words = indice.words;
+        int base = value * words;
+        int wi = cursores[offset + value];
+        while (wi < words) {
+            if (w.counting()) w.comparisons++;
+            long libres = bits[base + wi] & ~placed[wi];
+            if (libres != 0) {
+                cursores[offset + value] = wi;
+                return (wi << 6) + Long.numberOfTrailingZeros(libres);
+            }
+            wi++;
+        }
+        cursores[offset + value] = words;
+        return -1;
+    }
+
+    // ---- mejora local ligera (swap si mejora o empata) ----
+    private Individual localImprove(Individual ind, Worker w) {
+        // mas fuerte para 3x3 y 5x5, muy suave para grandes
+        final int tries =
+                (size <= 3) ? 220 :
+                (size <= 5) ? 140 :
+                (size <= 10) ? 35 : 4;
+
+        int[] perm = ind.perm;
+        int bestFit = (ind.fitness >= 0) ? ind.fitness : fitnessOf(perm, w);
+        long hash = ind.hash;
+
+        for (int t = 0; t < tries && !timedOut(); t++) {
+            int i = w.rand.nextInt(n);
+            int j = w.rand.nextInt(n);
+            if (i == j) continue;
+
+            // se evalua solo el vecindario del swap; si no conviene ni se toca perm
+            int delta = swapDelta(perm, i, j, w);
+
+            if (delta >= 0) { // aceptar mejora o empate (ayuda a salir de mesetas)
+                hash ^= swapHash(perm, i, j);
+                swap(perm, i, j);
+                bestFit += delta;
+            }
+        }
+
+        ind.fitness = bestFit;
+        ind.hash = hash;
+        return ind;
+    }
+
+    // ---- mutacion: swap (si es duplicado SIEMPRE muta; si no, con probabilidad) ----
+    private void resolveDuplicateWithMutationIfNeeded(Individual child, LongSet seen, Worker w) {
+        if (w.counting()) w.comparisons++;
+
+        boolean duplicate = seen.contains(child.hash);
+        boolean doMutate = duplicate || w.rand.nextDouble() < mutationRate();
+
+        if (!doMutate) {
+            seen.add(child.hash);
+            if (w.counting()) w.assignments++;
+            return;
+        }
+
+        if (mutate(child, duplicate, w)) {
+            // evitar duplicados (pocos intentos)
+            int tries = 0;
+            while (seen.contains(child.hash) && tries < 6 && !timedOut()) {
+                tries++;
+                int a = w.rand.nextInt(n);
+                int b = w.rand.nextInt(n);
+                child.fitness += swapDelta(child.perm, a, b, w);
+                child.hash ^= swapHash(child.perm, a, b);
+                swap(child.perm, a, b);
+            }
+
+            seen.add(child.hash);
+            return;
+        }
+
+        // no cambio (caso raro): igual lo marcamos como visto para no ciclar
+        seen.add(child.hash);
+        if (w.counting()) w.assignments++;
+    }
+
+    private double mutationRate() {
+        return (size <= 5) ? 0.35 : (size <= 10 ? 0.20 : 0.08);
+    }
+
+    // El mejor de varios swaps sobre el original; forced = cambia aunque no mejore.
+    // Aplica el swap elegido sobre child; devuelve false si no hubo cambio.
+    private boolean mutate(Individual child, boolean forced, Worker w) {
+        final int mutationTries = (size <= 5) ? 18 : 8;
+
+        int[] original = child.perm;
+        int fitO = (child.fitness >= 0) ? child.fitness : fitnessOf(original, w);
+
+        // cada intento es un swap sobre el original: se puntua con delta y
+        // solo se aplica el swap elegido
+        int bestI = -1, bestJ = -1;
+        int bestFit = fitO;
+
+        int firstI = -1, firstJ = -1;
+        int firstFit = fitO;
+
+        for (int t = 0; t < mutationTries && !timedOut(); t++) {
+            int i = w.rand.nextInt(n);
+            int j = w.rand.nextInt(n);
+
+            int fitM = fitO + swapDelta(original, i, j, w);
+
+            if (t == 0) { firstI = i; firstJ = j; firstFit = fitM; }
+            if (fitM > bestFit) {
+                bestFit = fitM;
+                bestI = i;
+                bestJ = j;
+            }
+        }
+
+        // si era duplicado y no mejoro, igual cambia para escapar del duplicado
+        if (bestI < 0 && forced && firstI >= 0) {
+            bestI = firstI;
+            bestJ = firstJ;
+            bestFit = firstFit;
+        }
+
+        if (bestI < 0) return false;
+
+        // los workers de los pares no imprimen (saldria entrelazado): guardan
+        // la mutacion y produceChildrenParallel la imprime en orden de par
+        if (verbose && EventLog.enabled(EventLog.Level.TRACE)) {
+            if (w == main) EventLog.mutation(original, bestI, bestJ, fitO, bestFit, chromosomeLimit(), compact);
+            else w.recordMutation(original, bestI, bestJ, fitO, bestFit, chromosomeLimit());
+        }
+        child.hash ^= swapHash(original, bestI, bestJ);
+        swap(original, bestI, bestJ);
+        child.fitness = bestFit;
+        if (w.counting()) w.assignments += 4;
+        return true;
+    }
+
+    private void sortByFitnessDesc(List<Individual> pop) {
+        pop.sort((x, y) -> Integer.compare(y.fitness, x.fitness));
+    }
+
+    // Mismo orden que el de arriba (estable, fitness desc) pero sobre un
+    // arreglo y con mergeBuffer, para no pedir memoria en cada generacion.
+    private void sortByFitnessDesc(Individual[] a, int len) {
+        Individual[] src = a, dst = mergeBuffer;
+        for (int width = 1; width < len; width *= 2) {
+            for (int lo = 0; lo < len; lo += 2 * width) {
+                int mid = Math.min(lo + width, len);
+                int hi = Math.min(lo + 2 * width, len);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) dst[k++] = (src[j].fitness > src[i].fitness) ? src[j++] : src[i++];
+                while (i < mid) dst[k++] = src[i++];
+                while (j < hi) dst[k++] = src[j++];
+            }
+            Individual[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != a) System.arraycopy(src, 0, a, 0, len);
+    }
+
+    // ---- printing requerido (va al EventLog, se formatea en el hilo de fondo) ----
+    private void printCross(Individual p1, Individual p2, Individual h1, Individual h2) {
+        EventLog.cross(p1.perm, p1.fitness, p2.perm, p2.fitness, h1.perm, h1.fitness, h2.perm, h2.fitness,
+                chromosomeLimit());
+    }
+
+    private int chromosomeLimit() {
+        return compact ? Math.min(25, n) : n;
+    }
+
+    private String chromosomeToString(int[] perm) {
+        int limit = chromosomeLimit();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < limit; i++) {
+            sb.append(perm[i]);
+            if (i < limit - 1) sb.append(",");
+        }
+        if (limit < perm.length) sb.append(",...");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static int[] randomPermutation(int n, RandomGenerator r) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int t = a[i]; a[i] = a[j]; a[j] = t;
+        }
+        return a;
+    }
+
+    // ---- hash Zobrist ----
+    // hash = XOR de z(pos, pieza) para cada celda; z se deriva con mix64 en
+    // vez de una tabla n*n (con 100x100 serian 10^8 longs). Un swap cambia
+    // solo dos terminos, asi que se actualiza en O(1) con swapHash.
+    private static final long ZOBRIST_SALT = 0x5A0B0A15L;
+
+    private static long zobrist(int n, int pos, int piece) {
+        return mix64(ZOBRIST_SALT + (long) pos * n + piece);
+    }
+
+    private static long hashPerm(int[] perm) {
+        final int n = perm.length;
+        long h = 0;
+        for (int i = 0; i < n; i++) h ^= zobrist(n, i, perm[i]);
+        return h;
+    }
+
+    // lo que cambia el hash al intercambiar perm[i] y perm[j] (antes del swap)
+    private static long swapHash(int[] perm, int i, int j) {
+        if (i == j) return 0;
+        final int n = perm.length;
+        int a = perm[i], b = perm[j];
+        return zobrist(n, i, a) ^ zobrist(n, j, b) ^ zobrist(n, i, b) ^ zobrist(n, j, a);
+    }
+}
+
+    // ============================================================
+    // ===================== GENETICO POR ISLAS ====================
+    // K poblaciones independientes (cada una con su semilla) evolucionan en
+    // un ForkJoinPool. Cada GA_MIGRATION_INTERVAL generaciones los mejores de
+    // cada isla pasan a la siguiente en anillo (i -> i+1). Al final se juntan
+    // todas las poblaciones para el top 3 y las metricas.
+    // ============================================================
+    static class IslandGeneticSolver {
+        private final int size;
+        private final GeneticSolver[] islands;
+        private final int migrationInterval;
+        private final int migrants;
+
+        private final boolean parallelChildren;
+
+        public IslandGeneticSolver(int size, PieceSet set, int islandCount, int populationSize,
+                                   int childrenCount, long maxMs, int migrationInterval, int migrants) {
+            this(size, set, islandCount, populationSize, childrenCount, maxMs, migrationInterval, migrants, false);
+        }
+
+        // parallelChildren: ademas, cada isla produce sus hijos en paralelo en el mismo pool
+        public IslandGeneticSolver(int size, PieceSet set, int islandCount, int populationSize,
+                                   int childrenCount, long maxMs, int migrationInterval, int migrants,
+                                   boolean parallelChildren) {
+            this.size = size;
+            this.parallelChildren = parallelChildren;
+            this.islands = new GeneticSolver[islandCount];
+            this.migrationInterval = migrationInterval;
+            this.migrants = migrants;
+
+            long baseSeed = GeneticSolver.defaultSeed(size);
+            for (int i = 0; i < islandCount; i++) {
+                // isla 0 = misma semilla que el genetico de un hilo
+                islands[i] = new GeneticSolver(size, set, populationSize, childrenCount, maxMs, baseSeed + 7919L * i);
+                islands[i].setVerbose(false);
+            }
+        }
+
+        public Metrics solveAndReport() {
+            MemoryMeter memory = MemoryMeter.start();
+            long start = System.nanoTime();
+
+            ForkJoinPool pool = MemoryMeter.newPool(Math.max(islands.length, GA_THREADS));
+            if (parallelChildren) {
+                for (GeneticSolver island : islands) island.setPool(pool);
+            }
+            FitnessTrace trace = new FitnessTrace(start);
+            int target = GeneticSolver.targetFitness(FitnessEvaluator.getMaxFitness(size));
+            int limit = GA_RUN_TO_BUDGET ? Integer.MAX_VALUE : GA_GENERATIONS;
+            try {
+                runOnAll(pool, GeneticSolver::initialize);
+                trace.record(0, bestOfAll());
+
+                int gen = 0;
+                boolean perfect = false;
+                while (gen < limit && !perfect) {
+                    if (islands[0].isTimedOut()) {
+                        trace.stoppedBy(GA_RUN_TO_BUDGET ? "deadline" : "timeout");
+                        break;
+                    }
+                    final int from = gen + 1;
+                    final int to = (int) Math.min(limit, (long) gen + migrationInterval);
+                    runOnAll(pool, island -> {
+                        for (int g = from; g <= to && !island.isTimedOut(); g++) {
+                            if (island.runGeneration(g)) break;
+                        }
+                    });
+                    gen = to;
+
+                    perfect = migrateRing();
+                    trace.record(gen, bestOfAll());
+                    if (gen <= GA_GENERATIONS && EventLog.enabled(EventLog.Level.SUMMARY)) {
+                        EventLog.text("[ISLAS] Generacion " + gen + " - mejor por isla: " + bestPerIsland());
+                    }
+                    if (perfect || bestOfAll() >= target) {
+                        trace.stoppedBy("objetivo");
+                        break;
+                    }
+                    if (GA_RUN_TO_BUDGET && trace.stagnated(GA_STAGNATION_GENERATIONS)) {
+                        trace.stoppedBy("estancado");
+                        break;
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            // un migrante puede vivir en dos islas: se junta sin repetidos
+            List<GeneticSolver.Individual> merged = new ArrayList<>();
+            GeneticSolver.LongSet seen = new GeneticSolver.LongSet(islands.length * islands[0].getPopulation().size());
+            long comps = 0;
+            long assigns = 0;
+            boolean timedOut = false;
+            for (GeneticSolver island : islands) {
+                for (GeneticSolver.Individual ind : island.getPopulation()) {
+                    if (seen.add(ind.hash)) merged.add(ind);
+                }
+                comps += island.getComparisons();
+                assigns += island.getAssignments();
+                timedOut |= island.isTimedOut();
+            }
+            Metrics m = islands[0].report(merged, start, memory, comps, assigns, timedOut);
+            m.trace = trace;
+            return m;
+        }
+
+        private int bestOfAll() {
+            int best = 0;
+            for (GeneticSolver island : islands) best = Math.max(best, island.getPopulation().get(0).fitness);
+            return best;
+        }
+
+        private void runOnAll(ForkJoinPool pool, java.util.function.Consumer<GeneticSolver> step) {
+            List<Callable<Void>> tasks = new ArrayList<>(islands.length);
+            for (GeneticSolver island : islands) {
+                tasks.add(() -> { step.accept(island); return null; });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        // anillo: primero se copian todos los emigrantes, despues se insertan
+        private boolean migrateRing() {
+            List<List<GeneticSolver.Individual>> outgoing = new ArrayList<>(islands.length);
+            for (GeneticSolver island : islands) outgoing.add(island.topIndividuals(migrants));
+
+            boolean perfect = false;
+            int maxFitness = FitnessEvaluator.getMaxFitness(size);
+            for (int i = 0; i < islands.length; i++) {
+                if (islands.length > 1) islands[(i + 1) % islands.length].receiveMigrants(outgoing.get(i));
+                perfect |= islands[i].getPopulation().get(0).fitness == maxFitness;
+            }
+            return perfect;
+        }
+
+        void setCrossover(GeneticSolver.Crossover crossover) {
+            for (GeneticSolver island : islands) island.setCrossover(crossover);
+        }
+
+        private String bestPerIsland() {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < islands.length; i++) {
+                sb.append(islands[i].getPopulation().get(0).fitness);
+                if (i < islands.length - 1) sb.append(",");
+            }
+            return sb.append("}").toString();
+        }
+    }
+
+    // ============================================================
+    // ======================== PORTAFOLIO =========================
+    // Todos los motores contra el mismo puzzle, cada uno en su hilo y con el
+    // mismo deadline. El primero que llena el tablero levanta `cancel` y los
+    // demas lo ven en su siguiente nodo (o generacion) y terminan solos.
+    // Si nadie resuelve, al deadline gana el mejor fitness. La latencia es la
+    // del motor mas rapido para ese puzzle, no la suma de los timeouts.
+    // ============================================================
+    interface Solver {
+        boolean solve();
+        CompactBoard getTablero();
+        long getComparaciones();
+        long getAsignaciones();
+        boolean isTimedOut();
+    }
+
+    static final class Portfolio {
+        // un motor y lo que logro en la carrera
+        static final class Entry {
+            final String name;
+            final Solver solver;
+            boolean solved;
+            boolean timedOut;
+            int fitness;
+            long timeMs; // desde la largada hasta que el motor se detuvo
+
+            Entry(String name, Solver solver) {
+                this.name = name;
+                this.solver = solver;
+            }
+        }
+
+        // el genetico como Solver: evoluciona hasta resolver o ser detenido
+        private static final class GeneticEngine implements Solver {
+            private final GeneticSolver ga;
+            private final long deadlineNano;
+
+            GeneticEngine(GeneticSolver ga, long deadlineNano) {
+                this.ga = ga;
+                this.deadlineNano = deadlineNano;
+            }
+
+            public boolean solve() { return ga.evolveToSolution(); }
+            public CompactBoard getTablero() { return ga.bestBoard(); }
+            public long getComparaciones() { return ga.getComparisons(); }
+            public long getAsignaciones() { return ga.getAssignments(); }
+            public boolean isTimedOut() { return System.nanoTime() > deadlineNano; }
+        }
+
+        private final PieceSet set;
+        private final AtomicBoolean cancel = new AtomicBoolean();
+        private final AtomicInteger winner = new AtomicInteger(-1);
+        private final List<Entry> entries = new ArrayList<>();
+        private long startNano;
+        private long firstSolutionNano;
+
+        Portfolio(int size, PieceSet set, long maxMs) {
+            this.set = set;
+            long deadlineNano = deadlineFor(maxMs);
+
+            BruteForceSolver brute = BruteForceSolver.subtree(size, set, deadlineNano, cancel);
+            brute.setForwardChecking(SEARCH_FORWARD_CHECK);
+            entries.add(new Entry("fuerza_bruta", brute));
+
+            CandidateIndex indice = new CandidateIndex(set);
+            if (FAST_MRV) {
+                entries.add(new Entry("avance_rapido", AvanceRapidoMRV.subtree(size, set, indice, deadlineNano, cancel)));
+            } else {
+                AvanceRapido fast = AvanceRapido.subtree(size, set, indice, deadlineNano, cancel);
+                fast.setForwardChecking(SEARCH_FORWARD_CHECK);
+                entries.add(new Entry("avance_rapido", fast));
+            }
+
+            if (RUN_ROW_SOLVER) {
+                AvancePorFilas rows = new AvancePorFilas(size, set, maxMs, ROW_BUDGET);
+                rows.setCancel(cancel);
+                entries.add(new Entry("avance_por_filas", rows));
+            }
+
+            GeneticSolver ga = new GeneticSolver(size, set, populationSizeFor(size), childrenCountFor(size), maxMs);
+            ga.setCancel(cancel);
+            entries.add(new Entry("genetico", new GeneticEngine(ga, deadlineNano)));
+        }
+
+        // Corre todos los motores y espera a que se detengan; true si alguno resolvio
+        boolean race() {
+            ForkJoinPool pool = MemoryMeter.newPool(entries.size());
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                int id = i;
+                tasks.add(() -> {
+                    run(id);
+                    return null;
+                });
+            }
+            startNano = System.nanoTime();
+            try {
+                for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Fallo un motor del portafolio", e.getCause());
+            } catch (InterruptedException e) {
+                cancel.set(true);
+                Thread.currentThread().interrupt();
+            } finally {
+                pool.shutdown();
+            }
+            return winner.get() >= 0;
+        }
+
+        private void run(int id) {
+            Entry e = entries.get(id);
+            e.solved = e.solver.solve();
+            long now = System.nanoTime();
+            if (e.solved && winner.compareAndSet(-1, id)) {
+                firstSolutionNano = now;
+                cancel.set(true);
+            }
+            e.timedOut = e.solver.isTimedOut();
+            e.timeMs = (now - startNano) / 1_000_000L;
+            e.fitness = e.solver.getTablero().countMatches(set);
+        }
+
+        // el ganador, o el de mejor fitness si nadie resolvio
+        Entry best() {
+            int w = winner.get();
+            if (w >= 0) return entries.get(w);
+            Entry best = entries.get(0);
+            for (Entry e : entries) {
+                if (e.fitness > best.fitness) best = e;
+            }
+            return best;
+        }
+
+        String status(Entry e) {
+            int w = winner.get();
+            if (e.solved) return (e == entries.get(w)) ? "ganador" : "resolvio despues del ganador";
+            if (w >= 0 && e.timeMs >= entries.get(w).timeMs) return "cancelado";
+            return e.timedOut ? "timeout" : "termino sin solucion";
+        }
+
+        List<Entry> getEntries() { return entries; }
+        long getFirstSolutionNano() { return firstSolutionNano; }
+
+        long getComparaciones() {
+            long total = 0;
+            for (Entry e : entries) total += e.solver.getComparaciones();
+            return total;
+        }
+
+        long getAsignaciones() {
+            long total = 0;
+            for (Entry e : entries) total += e.solver.getAsignaciones();
+            return total;
         }
+    }
+
+    // ============================================================
+    // ===================== TABLAS GENETICO =======================
+    // ============================================================
+    static int populationSizeFor(int size) {
+        int cells = size * size;
+
+        if (cells <= 9)   return 120; // 3x3
+        if (cells <= 25)  return 160; // 5x5
+        if (cells <= 100) return 80;  // 10x10
+        if (cells <= 225) return 60;  // 15x15
+        if (cells <= 900) return 40;  // 30x30
+        return 30; // 60x60 y 100x100
+    }
+
+    static int childrenCountFor(int size) {
+        return populationSizeFor(size) * 2;
+    }
 
-        fillOX(child1, b, cut2);
-        fillOX(child2, a, cut2);
+    // ============================================================
+    // ====================== EXPORTAR RESULTADOS ==================
+    // Una fila por Metrics en CSV (con cabecera) y en JSON Lines, siempre
+    // agregando al final: una serie de corridas queda en los mismos archivos.
+    // read() vuelve a cargar cualquiera de los dos formatos para "compare".
+    // ============================================================
+    static final class ResultsExport {
+        static final String[] COLUMNS = {
+                "algorithm", "size", "maxValue", "seed", "timeMs", "cpuTimeMs", "allocatedBytes",
+                "peakHeapBytes", "gcCount", "gcTimeMs", "comparisons", "assignments", "solved",
+                "bestFitness", "note"};
 
-        Individual k1 = new Individual();
-        k1.perm = child1;
-        k1.hash = hashPerm(child1);
-        k1.fitness = -1;
+        private ResultsExport() {
+        }
 
-        Individual k2 = new Individual();
-        k2.perm = child2;
-        k2.hash = hashPerm(child2);
-        k2.fitness = -1;
+        static void append(String base, List<Metrics> rows) throws java.io.IOException {
+            java.nio.file.Path csv = java.nio.file.Paths.get(base + ".csv");
+            java.nio.file.Path jsonl = java.nio.file.Paths.get(base + ".jsonl");
+            java.nio.file.Path dir = csv.toAbsolutePath().getParent();
+            if (dir != null) java.nio.file.Files.createDirectories(dir);
+
+            boolean header = !java.nio.file.Files.exists(csv) || java.nio.file.Files.size(csv) == 0;
+            StringBuilder sb = new StringBuilder();
+            if (header) sb.append(String.join(",", COLUMNS)).append('\n');
+            for (Metrics m : rows) sb.append(csvLine(m)).append('\n');
+            appendText(csv, sb);
+
+            sb.setLength(0);
+            for (Metrics m : rows) sb.append(jsonLine(m)).append('\n');
+            appendText(jsonl, sb);
+        }
 
-        assignments += 6;
-        return new Individual[]{k1, k2};
-    }
+        private static void appendText(java.nio.file.Path path, CharSequence text) throws java.io.IOException {
+            java.nio.file.Files.writeString(path, text, java.nio.charset.StandardCharsets.UTF_8,
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.APPEND);
+        }
 
-    private void fillOX(int[] child, int[] donor, int startFrom) {
-        boolean[] used = new boolean[n];
-        for (int v : child) {
-            comparisons++;
-            if (v != -1) used[v] = true;
+        private static Object[] values(Metrics m) {
+            return new Object[]{
+                    m.algorithm, m.size, m.maxValue, m.seed, m.timeMs, m.cpuTimeMs, m.allocatedBytes,
+                    m.peakHeapBytes, m.gcCount, m.gcTimeMs, m.comparisons, m.assignments, m.solved,
+                    m.bestFitness, m.note == null ? "" : m.note};
         }
 
-        int pos = (startFrom + 1) % n;
-        for (int i = 0; i < n; i++) {
-            int gene = donor[(startFrom + 1 + i) % n];
-            comparisons++;
-            if (!used[gene]) {
-                while (child[pos] != -1) {
-                    pos = (pos + 1) % n;
-                    comparisons++;
+        static String csvLine(Metrics m) {
+            StringBuilder sb = new StringBuilder();
+            Object[] v = values(m);
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(',');
+                String s = String.valueOf(v[i]);
+                if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0) {
+                    sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+                } else {
+                    sb.append(s);
                 }
-                child[pos] = gene;
-                used[gene] = true;
-                assignments += 2;
             }
+            return sb.toString();
         }
-    }
-
-    // ---- mejora local ligera (swap si mejora o empata) ----
-    private Individual localImprove(Individual ind) {
-        // mas fuerte para 3x3 y 5x5, muy suave para grandes
-        final int tries =
-                (size <= 3) ? 220 :
-                (size <= 5) ? 140 :
-                (size <= 10) ? 35 : 4;
 
-        int[] perm = ind.perm;
-        int bestFit = (ind.fitness >= 0) ? ind.fitness : fitnessOf(perm);
+        static String jsonLine(Metrics m) {
+            StringBuilder sb = new StringBuilder("{");
+            Object[] v = values(m);
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(COLUMNS[i]).append("\":");
+                if (v[i] instanceof String) {
+                    sb.append('"');
+                    for (char c : ((String) v[i]).toCharArray()) {
+                        if (c == '"' || c == '\\') sb.append('\\').append(c);
+                        else if (c < 0x20) sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                    sb.append('"');
+                } else {
+                    sb.append(v[i]);
+                }
+            }
+            return sb.append('}').toString();
+        }
 
-        for (int t = 0; t < tries && !timedOut(); t++) {
-            int i = rand.nextInt(n);
-            int j = rand.nextInt(n);
-            if (i == j) continue;
+        // .jsonl/.json: JSON Lines; cualquier otra extension: CSV con cabecera
+        static List<Metrics> read(java.nio.file.Path path) throws java.io.IOException {
+            List<String> lines = java.nio.file.Files.readAllLines(path, java.nio.charset.StandardCharsets.UTF_8);
+            boolean json = path.toString().endsWith(".jsonl") || path.toString().endsWith(".json");
+            List<Metrics> out = new ArrayList<>();
+            String[] header = null;
+            for (String line : lines) {
+                if (line.isBlank()) continue;
+                if (json) {
+                    out.add(fromRecord(parseJson(line)));
+                } else if (header == null) {
+                    header = splitCsv(line).toArray(new String[0]);
+                } else {
+                    List<String> cells = splitCsv(line);
+                    Map<String, String> record = new HashMap<>();
+                    for (int i = 0; i < header.length && i < cells.size(); i++) record.put(header[i], cells.get(i));
+                    out.add(fromRecord(record));
+                }
+            }
+            return out;
+        }
 
-            int tmp = perm[i];
-            perm[i] = perm[j];
-            perm[j] = tmp;
+        private static Metrics fromRecord(Map<String, String> r) {
+            Metrics m = new Metrics();
+            m.algorithm = r.getOrDefault("algorithm", "?");
+            m.size = (int) number(r, "size");
+            m.maxValue = (int) number(r, "maxValue");
+            m.seed = r.containsKey("seed") ? number(r, "seed") : -1;
+            m.timeMs = number(r, "timeMs");
+            m.cpuTimeMs = number(r, "cpuTimeMs");
+            m.allocatedBytes = number(r, "allocatedBytes");
+            m.peakHeapBytes = number(r, "peakHeapBytes");
+            m.gcCount = number(r, "gcCount");
+            m.gcTimeMs = number(r, "gcTimeMs");
+            m.comparisons = number(r, "comparisons");
+            m.assignments = number(r, "assignments");
+            m.solved = Boolean.parseBoolean(r.get("solved"));
+            m.bestFitness = (int) number(r, "bestFitness");
+            m.note = r.getOrDefault("note", "");
+            return m;
+        }
 
-            int fit = fitnessOf(perm);
+        private static long number(Map<String, String> r, String key) {
+            String v = r.get(key);
+            return (v == null || v.isEmpty()) ? 0 : Long.parseLong(v.trim());
+        }
 
-            if (fit >= bestFit) { // aceptar mejora o empate (ayuda a salir de mesetas)
-                bestFit = fit;
-            } else {
-                // revertir
-                tmp = perm[i];
-                perm[i] = perm[j];
-                perm[j] = tmp;
+        private static List<String> splitCsv(String line) {
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        cell.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else {
+                    cell.append(c);
+                }
             }
+            cells.add(cell.toString());
+            return cells;
         }
 
-        ind.fitness = bestFit;
-        ind.hash = hashPerm(ind.perm);
-        return ind;
+        // objeto plano: "clave": string | numero | true/false
+        private static Map<String, String> parseJson(String line) {
+            Map<String, String> record = new HashMap<>();
+            int i = line.indexOf('{') + 1;
+            while (i < line.length()) {
+                int k0 = line.indexOf('"', i);
+                if (k0 < 0) break;
+                int k1 = line.indexOf('"', k0 + 1);
+                String key = line.substring(k0 + 1, k1);
+                i = line.indexOf(':', k1) + 1;
+                while (line.charAt(i) == ' ') i++;
+
+                StringBuilder value = new StringBuilder();
+                if (line.charAt(i) == '"') {
+                    for (i++; line.charAt(i) != '"'; i++) {
+                        char c = line.charAt(i);
+                        if (c == '\\') {
+                            char e = line.charAt(++i);
+                            if (e == 'u') {
+                                value.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                                i += 4;
+                            } else {
+                                value.append(e == 'n' ? '\n' : e == 't' ? '\t' : e);
+                            }
+                        } else {
+                            value.append(c);
+                        }
+                    }
+                    i++;
+                } else {
+                    while (i < line.length() && line.charAt(i) != ',' && line.charAt(i) != '}') value.append(line.charAt(i++));
+                }
+                record.put(key, value.toString().trim());
+                i = line.indexOf(',', i);
+                if (i < 0) break;
+                i++;
+            }
+            return record;
+        }
     }
 
-    // ---- mutacion: swap (si es duplicado SIEMPRE muta; si no, con probabilidad) ----
-    private Individual resolveDuplicateWithMutationIfNeeded(Individual child, Set<Long> seen) {
-        comparisons++;
+    // ============================================================
+    // ======================== BENCHMARKS =========================
+    // Micro-benchmarks de los caminos calientes, al estilo JMH pero sin
+    // dependencias (el proyecto es un solo .java): iteraciones de
+    // calentamiento para el JIT, iteraciones medidas por tiempo, resultado
+    // consumido por un sumidero para que no se elimine como codigo muerto, y
+    // bytes asignados por operacion (ThreadMXBean) + GCs durante la medicion.
+    // Puzzles con semilla fija: todas las corridas miden lo mismo. Como el
+    // fork de JMH, se mide en otra JVM con -Dpuzzle.counters=off para no
+    // pagar el conteo en los caminos medidos.
+    // Uso: java proyectoanalisis.PuzzleSolver bench [filtro]
+    // ============================================================
+    static class Benchmarks {
+        static final long SEED = 20240601L;
+        static final int[] MAX_VALUES = {9, 15};
+        static final int WARMUP_ITERATIONS = 3;
+        static final int MEASURE_ITERATIONS = 5;
+        static final long ITERATION_MS = 300;
+        static final long SOLVER_OP_MS = 50; // tope por operacion para los backtracking
+
+        static volatile long sink;
+        private static int timeouts; // operaciones de los backtracking que vencieron SOLVER_OP_MS
+
+        interface Op {
+            long run();
+        }
 
-        boolean duplicate = seen.contains(child.hash);
+        static void run(String filter) throws java.io.IOException {
+            if (Counters.ON) {
+                fork(filter);
+                return;
+            }
+            System.out.println("=== BENCHMARKS (warmup " + WARMUP_ITERATIONS + "x" + ITERATION_MS + "ms, medicion "
+                    + MEASURE_ITERATIONS + "x" + ITERATION_MS + "ms) ===");
+            System.out.printf("%-22s %5s %4s %14s %12s %14s %6s%n",
+                    "benchmark", "size", "max", "ops/s", "+-", "bytes/op", "gc");
+
+            for (int size : SIZES) {
+                for (int maxValue : MAX_VALUES) {
+                    List<Piece> pieces = PuzzleGenerator.generateWithSolution(size, maxValue, SEED + size * 31L + maxValue);
+                    PieceSet set = PieceSet.of(pieces);
+                    int n = size * size;
+
+                    GeneticSolver ga = new GeneticSolver(size, set, 2, 2, Long.MAX_VALUE / 4_000_000L);
+                    GeneticSolver.Worker w = ga.main;
+                    GeneticSolver.Individual p1 = randomIndividual(ga, n, w);
+                    GeneticSolver.Individual p2 = randomIndividual(ga, n, w);
+
+                    Board full = new Board(size);
+                    for (int k = 0; k < n; k++) full.place(pieces.get(k), k / size, k % size);
+
+                    benchSolver(filter, "bruteForce", size, maxValue, () -> new BruteForceSolver(size, set, SOLVER_OP_MS));
+                    benchSolver(filter, "avanceRapido", size, maxValue, () -> new AvanceRapido(size, set, SOLVER_OP_MS));
+                    // p1 y p2 no cambian: localImprove trabaja sobre una copia
+                    // que se rehace antes de cada operacion, fuera del tiempo
+                    bench(filter, "ga.fitnessOf", size, maxValue, () -> ga.fitnessOf(p1.perm, w), null);
+                    GeneticSolver.Individual k1 = randomIndividual(ga, n, w);
+                    GeneticSolver.Individual k2 = randomIndividual(ga, n, w);
+                    bench(filter, "ga.orderCrossoverOX", size, maxValue, () -> {
+                        ga.orderCrossoverOX(p1, p2, k1, k2, w);
+                        return k1.hash;
+                    }, null);
+                    GeneticSolver.Individual copia = randomIndividual(ga, n, w);
+                    bench(filter, "ga.localImprove", size, maxValue, () -> ga.localImprove(copia, w).fitness, () -> {
+                        System.arraycopy(p1.perm, 0, copia.perm, 0, n);
+                        copia.fitness = p1.fitness;
+                        copia.hash = p1.hash;
+                    });
+                    bench(filter, "board.countMatches", size, maxValue, full::countMatches, null);
+                }
+            }
+        }
 
-        final double mutationRate = (size <= 5) ? 0.35 : (size <= 10 ? 0.20 : 0.08);
-        final int mutationTries   = (size <= 5) ? 18 : 8;
+        // Otra JVM con los mismos flags y -Dpuzzle.counters=off: Counters.ON es
+        // una constante y solo si arranca apagada el JIT saca el conteo
+        private static void fork(String filter) throws java.io.IOException {
+            List<String> cmd = (filter != null) ? javaCommand("-Dpuzzle.counters=off", "bench", filter)
+                    : javaCommand("-Dpuzzle.counters=off", "bench");
+            try {
+                int code = new ProcessBuilder(cmd).inheritIO().start().waitFor();
+                if (code != 0) throw new java.io.IOException("El benchmark termino con codigo " + code);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-        boolean doMutate = duplicate || rand.nextDouble() < mutationRate;
+        // java + los flags de esta JVM + flag (gana sobre uno igual anterior) + este main con args
+        static List<String> javaCommand(String flag, String... args) {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(java.nio.file.Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            cmd.add(flag);
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(PuzzleSolver.class.getName());
+            cmd.addAll(Arrays.asList(args));
+            return cmd;
+        }
 
-        if (!doMutate) {
-            seen.add(child.hash);
-            assignments++;
-            return child;
+        // Los backtracking solo se miden si resuelven dentro de SOLVER_OP_MS:
+        // si no, las ops/s medirian el timeout y se informa "timeout"
+        private static void benchSolver(String filter, String name, int size, int maxValue,
+                                        java.util.function.Supplier<Solver> solver) {
+            if (filter != null && !name.contains(filter)) return;
+            Op op = () -> {
+                Solver s = solver.get();
+                boolean ok = s.solve();
+                if (s.isTimedOut()) timeouts++;
+                return ok ? 1 : s.getComparaciones();
+            };
+            timeouts = 0;
+            op.run(); // prueba: si ya vence, no tiene sentido calentar ni medir
+            if (timeouts > 0) {
+                printTimeout(name, size, maxValue);
+                return;
+            }
+            bench(filter, name, size, maxValue, op, null);
         }
 
-        int[] original = child.perm;
-        int fitO = (child.fitness >= 0) ? child.fitness : fitnessOf(original);
+        private static void printTimeout(String name, int size, int maxValue) {
+            System.out.printf("%-22s %5d %4d %14s%n", name, size, maxValue, "timeout >" + SOLVER_OP_MS + "ms");
+        }
 
-        int[] bestPerm = original;
-        int bestFit = fitO;
+        private static GeneticSolver.Individual randomIndividual(GeneticSolver ga, int n, GeneticSolver.Worker w) {
+            GeneticSolver.Individual ind = new GeneticSolver.Individual();
+            ind.perm = GeneticSolver.randomPermutation(n, w.rand);
+            ind.fitness = ga.fitnessOf(ind.perm, w);
+            ind.hash = GeneticSolver.hashPerm(ind.perm);
+            return ind;
+        }
 
-        int[] firstMut = null;
-        int firstFit = fitO;
+        // reset (o null) se corre antes de cada operacion y no entra en el tiempo
+        private static void bench(String filter, String name, int size, int maxValue, Op op, Runnable reset) {
+            if (filter != null && !name.contains(filter)) return;
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) iteration(op, reset);
+
+            double[] opsPerSec = new double[MEASURE_ITERATIONS];
+            long ops = 0;
+            timeouts = 0;
+            long allocBefore = MemoryMeter.threadAllocatedBytes();
+            long gcBefore = MemoryMeter.gcCount();
+            for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+                long done = iteration(op, reset);
+                opsPerSec[i] = done * 1e9 / measuredNanos;
+                ops += done;
+            }
+            long alloc = MemoryMeter.threadAllocatedBytes() - allocBefore;
+            long gcs = MemoryMeter.gcCount() - gcBefore;
+            if (timeouts > 0) {
+                printTimeout(name, size, maxValue);
+                return;
+            }
 
-        for (int t = 0; t < mutationTries && !timedOut(); t++) {
-            int[] mutated = Arrays.copyOf(original, n);
-            int i = rand.nextInt(n);
-            int j = rand.nextInt(n);
-            int tmp = mutated[i];
-            mutated[i] = mutated[j];
-            mutated[j] = tmp;
+            double mean = 0;
+            for (double v : opsPerSec) mean += v;
+            mean /= opsPerSec.length;
+            double var = 0;
+            for (double v : opsPerSec) var += (v - mean) * (v - mean);
+            double err = Math.sqrt(var / Math.max(1, opsPerSec.length - 1));
 
-            int fitM = fitnessOf(mutated);
+            System.out.printf("%-22s %5d %4d %14.1f %12.1f %14.1f %6d%n",
+                    name, size, maxValue, mean, err, (double) alloc / Math.max(1, ops), gcs);
+        }
 
-            if (t == 0) { firstMut = mutated; firstFit = fitM; }
-            if (fitM > bestFit) {
-                bestFit = fitM;
-                bestPerm = mutated;
+        private static long measuredNanos; // tiempo de la ultima iteracion, sin los reset
+
+        // operaciones completadas en ITERATION_MS (al menos una)
+        private static long iteration(Op op, Runnable reset) {
+            long start = System.nanoTime();
+            long end = start + ITERATION_MS * 1_000_000L;
+            long ops = 0;
+            long acc = 0;
+            if (reset == null) {
+                do {
+                    acc += op.run();
+                    ops++;
+                } while (System.nanoTime() < end);
+                measuredNanos = System.nanoTime() - start;
+            } else {
+                long nanos = 0;
+                do {
+                    reset.run();
+                    long t = System.nanoTime();
+                    acc += op.run();
+                    nanos += System.nanoTime() - t;
+                    ops++;
+                } while (System.nanoTime() < end);
+                measuredNanos = nanos;
             }
+            sink += acc;
+            return ops;
         }
+    }
 
-        // si era duplicado y no mejoro, igual cambia para escapar del duplicado
-        if (bestPerm == original && duplicate && firstMut != null) {
-            bestPerm = firstMut;
-            bestFit = firstFit;
+    // ============================================================
+    // ======================= VERIFICACION ========================
+    // Chequeos de regresion sin dependencias (el proyecto es un solo .java,
+    // sin build ni framework de tests). Imprime OK/FALLA por chequeo y
+    // termina con codigo 1 si alguno falla:
+    // - contadores: fuerza bruta y avance rapido iterativos contra lo que
+    //   daban las versiones recursivas originales, en puzzles con semilla fija
+    // - PZL1: escribir y leer devuelve el mismo puzzle; se rechazan archivos
+    //   con bordes fuera de rango y tamanos que no cierran
+    // - genetico: la misma huella (fitness, contadores y salida) corriendo
+    //   en otra JVM con -XX:ActiveProcessorCount=1 y con 4
+    // Uso: java proyectoanalisis.PuzzleSolver verificar
+    // ============================================================
+    static class Verificacion {
+        // size, maxValue, semilla (-1 = 3x3 fijo), fuerza bruta: comparaciones
+        // y asignaciones, avance rapido: asignaciones, hash del tablero (ids).
+        // Medidos con las versiones recursivas originales sobre las mismas
+        // piezas; los dos algoritmos llegaban al mismo tablero.
+        static final long[][] RECURSIVOS = {
+            {3, 9, -1, 127, 84, 39, -883926621},
+            {3, 15, -1, 127, 84, 39, -883926621},
+            {4, 2, 1, 20223, 10675, 2923, 713220403},
+            {4, 3, 2, 837901, 427421, 116581, 1354408365},
+            {4, 5, 3, 51730, 24909, 6805, 256667723},
+            {5, 9, 42, 368120, 158497, 30697, 1499461511},
+            {6, 15, 7, 1063128, 430431, 61521, 1922619021},
+        };
+        // comparaciones de avance rapido en los mismos casos: desde el indice de
+        // bitsets cuentan palabras recorridas, asi que no son las recursivas
+        static final long[] AVANCE_RAPIDO_COMPARACIONES = {37, 37, 2445, 97160, 5680, 25596, 51290};
+
+        static final int[][] GENETICO = {{3, 9, -1}, {5, 9, 42}, {10, 9, 7}};
+
+        private static int fallas = 0;
+
+        static void run() throws java.io.IOException {
+            System.out.println("=== VERIFICACION ===");
+            contadores();
+            archivoPZL1();
+            genetico();
+            System.out.println(fallas == 0 ? "Todo OK" : fallas + " chequeo(s) con FALLA");
+            if (fallas > 0) System.exit(1);
         }
 
-        if (bestPerm != original) {
-            printMutation(original, fitO, bestPerm, bestFit);
-
-            Individual improved = new Individual();
-            improved.perm = bestPerm;
-            improved.fitness = bestFit;
-            improved.hash = hashPerm(bestPerm);
-            assignments += 4;
+        private static void check(String nombre, boolean ok, String detalle) {
+            System.out.println((ok ? "OK    " : "FALLA ") + nombre + (ok ? "" : ": " + detalle));
+            if (!ok) fallas++;
+        }
 
-            // evitar duplicados (pocos intentos)
-            int tries = 0;
-            while (seen.contains(improved.hash) && tries < 6 && !timedOut()) {
-                tries++;
-                int a = rand.nextInt(n);
-                int b = rand.nextInt(n);
-                int tt = improved.perm[a];
-                improved.perm[a] = improved.perm[b];
-                improved.perm[b] = tt;
-                improved.fitness = fitnessOf(improved.perm);
-                improved.hash = hashPerm(improved.perm);
-            }
+        private static List<Piece> piezas(long size, long maxValue, long seed) {
+            if (seed >= 0) return PuzzleGenerator.generateWithSolution((int) size, (int) maxValue, seed);
+            return (maxValue == 9) ? PuzzleGenerator.getFixed3x3_0_9() : PuzzleGenerator.getFixed3x3_0_15();
+        }
 
-            seen.add(improved.hash);
-            return improved;
+        private static int hashTablero(CompactBoard tablero, PieceSet set) {
+            int[] ids = new int[tablero.grid.length];
+            for (int c = 0; c < ids.length; c++) ids[c] = (tablero.grid[c] < 0) ? -1 : set.id[tablero.grid[c]];
+            return Arrays.hashCode(ids);
         }
 
-        // no cambio (caso raro): igual lo marcamos como visto para no ciclar
-        seen.add(child.hash);
-        assignments++;
-        return child;
-    }
+        private static void contadores() {
+            if (!Counters.ON || Counters.SAMPLED) {
+                System.out.println("(contadores " + Counters.describe() + ": se omite la comparacion de contadores)");
+                return;
+            }
+            for (int i = 0; i < RECURSIVOS.length; i++) {
+                long[] c = RECURSIVOS[i];
+                int size = (int) c[0];
+                PieceSet set = PieceSet.of(piezas(c[0], c[1], c[2]));
+                String caso = size + "x" + size + " 0.." + c[1] + (c[2] >= 0 ? " semilla " + c[2] : " fijo");
+
+                BruteForceSolver bf = new BruteForceSolver(size, set, 60_000);
+                boolean okBf = bf.solve();
+                check("fuerza bruta " + caso, okBf && bf.getComparaciones() == c[3] && bf.getAsignaciones() == c[4]
+                                && hashTablero(bf.getTablero(), set) == c[6],
+                        "resuelto=" + okBf + " comparaciones=" + bf.getComparaciones() + " (esperado " + c[3]
+                                + "), asignaciones=" + bf.getAsignaciones() + " (esperado " + c[4] + ")");
+
+                AvanceRapido ar = new AvanceRapido(size, set, 60_000);
+                boolean okAr = ar.solve();
+                check("avance rapido " + caso, okAr && ar.getAsignaciones() == c[5]
+                                && ar.getComparaciones() == AVANCE_RAPIDO_COMPARACIONES[i]
+                                && hashTablero(ar.getTablero(), set) == c[6],
+                        "resuelto=" + okAr + " comparaciones=" + ar.getComparaciones() + " (esperado "
+                                + AVANCE_RAPIDO_COMPARACIONES[i] + "), asignaciones=" + ar.getAsignaciones()
+                                + " (esperado " + c[5] + ")");
+            }
+        }
 
-    private void sortByFitnessDesc(List<Individual> pop) {
-        pop.sort((x, y) -> Integer.compare(y.fitness, x.fitness));
-    }
+        private static void archivoPZL1() throws java.io.IOException {
+            java.nio.file.Path path = java.nio.file.Files.createTempFile("verificar", ".pzl");
+            try {
+                // ids = indice (sin bloque de ids), ancho 1
+                idaYVuelta(path, "6x6 0..9", new PuzzleFile(6, 9, 11, PieceSet.of(PuzzleGenerator.generateWithSolution(6, 9, 11))));
+                // ids mezclados (con bloque de ids), ancho 2 y ancho 4
+                List<Piece> mezcladas = new ArrayList<>(PuzzleGenerator.generateWithSolution(5, 300, 12));
+                Collections.shuffle(mezcladas, new Random(13));
+                idaYVuelta(path, "5x5 0..300 ids mezclados", new PuzzleFile(5, 300, 12, PieceSet.of(mezcladas)));
+                idaYVuelta(path, "4x4 0..70000", new PuzzleFile(4, 70_000, 14, PieceSet.of(PuzzleGenerator.generateWithSolution(4, 70_000, 14))));
+
+                // escrito en streaming = el PieceSet del mismo generador
+                StreamingGenerator gen = new StreamingGenerator(40, 15, 15);
+                PuzzleFile.write(path, gen);
+                PuzzleFile leido = PuzzleFile.read(path);
+                check("PZL1 streaming 40x40", leido.size == 40 && leido.maxValue == 15 && leido.seed == 15
+                        && mismasPiezas(gen.toPieceSet(), leido.set), "el archivo no coincide con el generador");
+
+                // borde fuera de 0..maxValue (ancho 1: el primer borde de la pieza 0)
+                PuzzleFile.write(path, new PuzzleFile(3, 9, 1, PieceSet.of(PuzzleGenerator.getFixed3x3_0_9())));
+                try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                        java.nio.file.StandardOpenOption.WRITE)) {
+                    ch.write(java.nio.ByteBuffer.wrap(new byte[] {(byte) 200}), PuzzleFile.HEADER_BYTES);
+                }
+                boolean rechazado = false;
+                try {
+                    PuzzleFile.read(path);
+                } catch (java.io.IOException ex) {
+                    rechazado = true;
+                }
+                check("PZL1 rechaza bordes fuera de rango", rechazado, "read() acepto un borde 200 con maxValue 9");
 
-    // ---- printing requerido ----
-    private void printCross(Individual p1, Individual p2, Individual h1, Individual h2) {
-        System.out.println("[CRUCE]");
-        System.out.println("Padre 1 " + chromosomeToString(p1.perm) + " puntuacion " + p1.fitness);
-        System.out.println("Padre 2 " + chromosomeToString(p2.perm) + " puntuacion " + p2.fitness);
-        System.out.println("Hijo  1 " + chromosomeToString(h1.perm) + " puntuacion " + h1.fitness);
-        System.out.println("Hijo  2 " + chromosomeToString(h2.perm) + " puntuacion " + h2.fitness);
-    }
-
-    private void printMutation(int[] original, int fitO, int[] mutated, int fitM) {
-        if (!compact) {
-            System.out.println("[MUTACION]");
-            System.out.println("Individuo 1 " + chromosomeToString(original) + " puntuacion " + fitO);
-            System.out.println("Mutacion   " + chromosomeToString(mutated) + " puntuacion " + fitM);
-        } else {
-            System.out.println("[MUTACION] (modo compacto: cromosoma truncado)");
-            System.out.println("Individuo 1 " + chromosomeToString(original) + " puntuacion " + fitO);
-            System.out.println("Mutacion   " + chromosomeToString(mutated) + " puntuacion " + fitM);
+                rechazado = false;
+                try {
+                    PuzzleFile.write(path, new PuzzleFile(4, 9, 1, PieceSet.of(PuzzleGenerator.getFixed3x3_0_9())));
+                } catch (IllegalArgumentException ex) {
+                    rechazado = true;
+                }
+                check("PZL1 rechaza size que no cierra con las piezas", rechazado, "write() acepto size 4 con 9 piezas");
+            } finally {
+                java.nio.file.Files.deleteIfExists(path);
+            }
         }
-    }
 
-    private String chromosomeToString(int[] perm) {
-        int limit = compact ? Math.min(25, perm.length) : perm.length;
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        for (int i = 0; i < limit; i++) {
-            sb.append(perm[i]);
-            if (i < limit - 1) sb.append(",");
+        private static void idaYVuelta(java.nio.file.Path path, String caso, PuzzleFile puzzle) throws java.io.IOException {
+            PuzzleFile.write(path, puzzle);
+            PuzzleFile leido = PuzzleFile.read(path);
+            check("PZL1 ida y vuelta " + caso, leido.size == puzzle.size && leido.maxValue == puzzle.maxValue
+                    && leido.seed == puzzle.seed && mismasPiezas(puzzle.set, leido.set), "lo leido no es lo escrito");
         }
-        if (limit < perm.length) sb.append(",...");
-        sb.append("}");
-        return sb.toString();
-    }
 
-    private static int[] randomPermutation(int n, Random r) {
-        int[] a = new int[n];
-        for (int i = 0; i < n; i++) a[i] = i;
-        for (int i = n - 1; i > 0; i--) {
-            int j = r.nextInt(i + 1);
-            int t = a[i]; a[i] = a[j]; a[j] = t;
+        private static boolean mismasPiezas(PieceSet a, PieceSet b) {
+            return Arrays.equals(a.id, b.id) && Arrays.equals(a.top, b.top) && Arrays.equals(a.right, b.right)
+                    && Arrays.equals(a.bottom, b.bottom) && Arrays.equals(a.left, b.left);
         }
-        return a;
-    }
 
-    private static long hashPerm(int[] perm) {
-        long h = 1125899906842597L;
-        for (int v : perm) h = 31L * h + v;
-        return h;
-    }
-}
+        // El genetico corre en JVMs hijas (la cantidad de nucleos se fija al
+        // arrancar la JVM); cada una imprime su huella y tienen que coincidir
+        private static void genetico() throws java.io.IOException {
+            String uno = huellaEnOtraJvm(1);
+            String cuatro = huellaEnOtraJvm(4);
+            check("genetico igual con 1 y 4 nucleos", uno != null && uno.equals(cuatro),
+                    "1 nucleo: " + uno + " | 4 nucleos: " + cuatro);
+        }
 
-    // ============================================================
-    // ===================== TABLAS GENETICO =======================
-    // ============================================================
-    static int populationSizeFor(int size) {
-        int cells = size * size;
+        private static String huellaEnOtraJvm(int nucleos) throws java.io.IOException {
+            List<String> cmd = Benchmarks.javaCommand("-XX:ActiveProcessorCount=" + nucleos, "verificar", "genetico");
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            String huella = null;
+            try (java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(p.getInputStream()))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.startsWith("HUELLA ")) huella = line.substring(7);
+                }
+            }
+            try {
+                p.waitFor();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return huella;
+        }
 
-        if (cells <= 9)   return 120; // 3x3
-        if (cells <= 25)  return 160; // 5x5
-        if (cells <= 100) return 80;  // 10x10
-        if (cells <= 225) return 60;  // 15x15
-        if (cells <= 900) return 40;  // 30x30
-        return 30; // 60x60 y 100x100
-    }
+        // (en la JVM hija) corre runGenetic sobre GENETICO con su salida
+        // capturada e imprime fitness, contadores, cuantos cruces/mutaciones
+        // salieron y un hash del resto de la salida (sin la linea de hilos)
+        static void huellaGenetico() {
+            java.io.PrintStream out = System.out;
+            java.io.ByteArrayOutputStream buf = new java.io.ByteArrayOutputStream();
+            StringBuilder huella = new StringBuilder();
+            System.setOut(new java.io.PrintStream(buf, true));
+            try {
+                for (int[] c : GENETICO) {
+                    Metrics m = runGenetic(c[0], PieceSet.of(piezas(c[0], c[1], c[2])));
+                    huella.append(c[0]).append(':').append(m.bestFitness).append('/').append(m.comparisons)
+                            .append('/').append(m.assignments).append(' ');
+                }
+                EventLog.flush();
+            } finally {
+                System.setOut(out);
+            }
 
-    static int childrenCountFor(int size) {
-        return populationSizeFor(size) * 2;
+            int cruces = 0, mutaciones = 0;
+            long hash = 17;
+            for (String line : buf.toString().split("\\R")) {
+                if (line.contains(" hilos")) continue;
+                if (line.startsWith("[CRUCE]")) cruces++;
+                if (line.startsWith("[MUTACION]")) mutaciones++;
+                hash = mix64(hash * 31 + line.hashCode());
+            }
+            out.println("HUELLA " + huella + "cruces=" + cruces + " mutaciones=" + mutaciones
+                    + " salida=" + Long.toHexString(hash));
+        }
     }
 
     // ============================================================
     // ============================= MAIN ==========================
     // ============================================================
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length > 0 && args[0].equals("bench")) {
+            Benchmarks.run(args.length > 1 ? args[1] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("verificar")) {
+            if (args.length > 1 && args[1].equals("genetico")) Verificacion.huellaGenetico();
+            else Verificacion.run();
+            return;
+        }
+        if (args.length == 5 && args[0].equals("write")) {
+            writePuzzleFile(args);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("solve")) {
+            solvePuzzleFile(args);
+            return;
+        }
+        if (args.length == 4 && args[0].equals("cruces")) {
+            compareCrossovers(args);
+            return;
+        }
+        if (args.length == 4 && args[0].equals("portafolio")) {
+            racePortfolio(args);
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("compare")) {
+            compareResults(args);
+            return;
+        }
+
         System.out.println("=== PUZZLE SOLVER (TODO EN UN SOLO MAIN) ===\n");
 
         runAllForRange("0..9", 9);
@@ -988,7 +5401,7 @@ static class GeneticSolver {
         runAllForRange("0..15", 15);
     }
 
-    static void runAllForRange(String label, int maxValue) {
+    static void runAllForRange(String label, int maxValue) throws java.io.IOException {
         System.out.println("=== VARIANTE NUMERICA: " + label + " ===\n");
 
         for (int size : SIZES) {
@@ -998,10 +5411,14 @@ static class GeneticSolver {
 
             // Generacion (NO se cuenta para metricas)
             List<Piece> pieces;
+            long seed = -1;
             if (size == 3 && maxValue == 9) {
                 pieces = PuzzleGenerator.getFixed3x3_0_9();
             } else if (size == 3 && maxValue == 15) {
                 pieces = PuzzleGenerator.getFixed3x3_0_15();
+            } else if (PUZZLE_SEED != null) {
+                seed = PUZZLE_SEED + size * 31L + maxValue;
+                pieces = PuzzleGenerator.generateWithSolution(size, maxValue, seed);
             } else {
                 pieces = PuzzleGenerator.generateWithSolution(size, maxValue);
             }
@@ -1013,124 +5430,403 @@ static class GeneticSolver {
                 System.out.println("\nPiezas generadas: " + pieces.size() + " (impresion omitida por tamano)");
             }
 
-            // Ejecutar los 3 algoritmos
-            Metrics brute = runBruteForce(size, pieces);
-            Metrics fast  = runFast(size, pieces);
-            Metrics gen   = runGenetic(size, pieces);
+            runAlgorithms(size, PieceSet.of(pieces), maxValue, seed);
+        }
+    }
+
+    // Los 3 algoritmos + resumen (la conversion a PieceSet queda fuera de las mediciones)
+    static void runAlgorithms(int size, PieceSet set, int maxValue, long seed) throws java.io.IOException {
+        if (PRECHECK_FEASIBILITY) {
+            FeasibilityCheck check = FeasibilityCheck.of(size, set);
+            if (!check.feasible) {
+                System.out.println("\n[PRECHEQUEO] Puzzle imposible, no se corren los algoritmos: " + check.detail);
+                System.out.println();
+                return;
+            }
+        }
 
-            // Resumen
-            System.out.println("\n>>> RESUMEN METRICAS (" + size + "x" + size + ", " + label + ")");
-            printMetrics("Fuerza bruta", brute);
-            printMetrics("Avance rapido", fast);
-            printMetrics("Genetico", gen);
+        if (PORTFOLIO_MODE) {
+            Metrics race = runPortfolio(size, set);
+            System.out.println("\n>>> RESUMEN METRICAS (" + size + "x" + size + ", 0.." + maxValue + ")");
+            printMetrics("Portafolio", race);
             System.out.println();
+            exportResults(List.of(tag(race, "portafolio", size, maxValue, seed)));
+            return;
         }
+
+        Metrics brute = runBruteForce(size, set);
+        Metrics fast  = runFast(size, set);
+        Metrics rows  = RUN_ROW_SOLVER ? runRows(size, set) : null;
+        Metrics gen   = runGenetic(size, set);
+
+        // Resumen
+        System.out.println("\n>>> RESUMEN METRICAS (" + size + "x" + size + ", 0.." + maxValue + ")");
+        printMetrics("Fuerza bruta", brute);
+        printMetrics("Avance rapido", fast);
+        if (rows != null) printMetrics("Avance por filas", rows);
+        printMetrics("Genetico", gen);
+        System.out.println();
+
+        List<Metrics> results = new ArrayList<>();
+        results.add(tag(brute, "fuerza_bruta", size, maxValue, seed));
+        results.add(tag(fast, "avance_rapido", size, maxValue, seed));
+        if (rows != null) results.add(tag(rows, "avance_por_filas", size, maxValue, seed));
+        results.add(tag(gen, "genetico", size, maxValue, seed));
+        exportResults(results);
     }
 
-    static Metrics runBruteForce(int size, List<Piece> pieces) {
-        System.out.println("\n--- ALGORITMO 1: FUERZA BRUTA (Backtracking) ---");
-        Metrics m = new Metrics();
+    static Metrics tag(Metrics m, String algorithm, int size, int maxValue, long seed) {
+        m.algorithm = algorithm;
+        m.size = size;
+        m.maxValue = maxValue;
+        m.seed = seed;
+        return m;
+    }
 
-        if (size * size > MAX_CELLS_RECURSIVE) {
-            m.solved = false;
-            m.bestFitness = 0;
-            m.note = "omitido (riesgo StackOverflow)";
-            System.out.println("Resultado: PARCIAL/NO (" + m.note + ")");
-            System.out.println("(Se omite por profundidad recursiva: " + (size * size) + " llamadas aprox.)");
-            return m;
+    static void exportResults(List<Metrics> results) throws java.io.IOException {
+        if (RESULTS_BASE == null) return;
+        ResultsExport.append(RESULTS_BASE, results);
+        System.out.println("[RESULTADOS] " + results.size() + " filas -> " + RESULTS_BASE + ".csv / .jsonl");
+    }
+
+    // compare <base> <nuevo> [umbral%]: por algoritmo/tamano/maxValue compara la
+    // mediana de tiempo y de nodos (comparaciones); sale con codigo 1 si hay regresiones
+    static void compareResults(String[] args) throws java.io.IOException {
+        List<Metrics> base = ResultsExport.read(java.nio.file.Paths.get(args[1]));
+        List<Metrics> current = ResultsExport.read(java.nio.file.Paths.get(args[2]));
+        double pct = (args.length > 3) ? Double.parseDouble(args[3]) : COMPARE_THRESHOLD_PCT;
+
+        Map<String, List<Metrics>> before = groupByCell(base);
+        Map<String, List<Metrics>> after = groupByCell(current);
+
+        System.out.println("Comparando " + args[1] + " -> " + args[2] + " (umbral " + pct + "%)");
+        System.out.printf("%-34s %10s %10s %8s %16s %16s %8s  %s%n",
+                "celda", "ms base", "ms nuevo", "dif", "nodos base", "nodos nuevo", "dif", "");
+        int regressions = 0;
+        for (Map.Entry<String, List<Metrics>> e : after.entrySet()) {
+            List<Metrics> old = before.get(e.getKey());
+            if (old == null) {
+                System.out.printf("%-34s %s%n", e.getKey(), "(nueva, sin base)");
+                continue;
+            }
+            long tb = median(old, true), tc = median(e.getValue(), true);
+            long nb = median(old, false), nc = median(e.getValue(), false);
+            // con timeout los nodos dependen de la velocidad: solo se mira el tiempo
+            boolean timeout = anyTimeout(old) || anyTimeout(e.getValue());
+
+            boolean slower = tc - tb > COMPARE_MIN_DELTA_MS && tc > tb * (1 + pct / 100.0);
+            boolean moreNodes = !timeout && nc > nb * (1 + pct / 100.0);
+            String flag = (slower || moreNodes)
+                    ? "REGRESION" + (slower ? " tiempo" : "") + (moreNodes ? " nodos" : "")
+                    : (timeout ? "(timeout: solo tiempo)" : "");
+            if (slower || moreNodes) regressions++;
+
+            System.out.printf(Locale.ROOT, "%-34s %10d %10d %7.1f%% %16d %16d %7.1f%%  %s%n",
+                    e.getKey(), tb, tc, change(tb, tc), nb, nc, change(nb, nc), flag);
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) System.out.printf("%-34s %s%n", key, "(solo en base)");
         }
 
-        Board b = new Board(size);
+        System.out.println(regressions == 0 ? "Sin regresiones." : regressions + " celda(s) con regresion.");
+        if (regressions > 0) System.exit(1);
+    }
 
-        long memBefore = usedMemoryBytes();
-        long start = System.nanoTime();
+    private static Map<String, List<Metrics>> groupByCell(List<Metrics> rows) {
+        Map<String, List<Metrics>> cells = new LinkedHashMap<>();
+        for (Metrics m : rows) {
+            String key = m.algorithm + " " + m.size + "x" + m.size + " 0.." + m.maxValue;
+            cells.computeIfAbsent(key, k -> new ArrayList<>()).add(m);
+        }
+        return cells;
+    }
 
-        try {
-            BruteForceSolver solver = new BruteForceSolver(b, pieces, MAX_MS_BRUTEFORCE);
-            boolean solved = solver.solve();
+    private static long median(List<Metrics> rows, boolean time) {
+        long[] v = new long[rows.size()];
+        for (int i = 0; i < v.length; i++) v[i] = time ? rows.get(i).timeMs : rows.get(i).comparisons;
+        Arrays.sort(v);
+        return v[v.length / 2];
+    }
 
-            long end = System.nanoTime();
-            long memAfter = usedMemoryBytes();
+    private static boolean anyTimeout(List<Metrics> rows) {
+        for (Metrics m : rows) {
+            if (m.note != null && m.note.contains("timeout")) return true;
+        }
+        return false;
+    }
 
-            m.solved = solved;
-            m.timeMs = (end - start) / 1_000_000L;
-            m.memoryBytes = Math.max(0, memAfter - memBefore);
-            m.comparisons = solver.getComparaciones();
-            m.assignments = solver.getAsignaciones();
-            m.bestFitness = b.countMatches();
-            m.note = solver.isTimedOut() ? "timeout" : "ok";
+    private static double change(long before, long after) {
+        return before == 0 ? 0.0 : (after - before) * 100.0 / before;
+    }
+
+    // write <archivo> <size> <maxValue> <seed>: genera con semilla (streaming) y guarda en binario
+    static void writePuzzleFile(String[] args) throws java.io.IOException {
+        java.nio.file.Path path = java.nio.file.Paths.get(args[1]);
+        int size = Integer.parseInt(args[2]);
+        int maxValue = Integer.parseInt(args[3]);
+        long seed = Long.parseLong(args[4]);
+
+        PuzzleFile.write(path, new StreamingGenerator(size, maxValue, seed));
+        System.out.println("Puzzle " + size + "x" + size + " (maxValue=" + maxValue + ", seed=" + seed + ") -> " + path);
+    }
+
+    // solve <archivo>: corre los 3 algoritmos sobre un puzzle binario
+    static void solvePuzzleFile(String[] args) throws java.io.IOException {
+        long t0 = System.nanoTime();
+        PuzzleFile puzzle = PuzzleFile.read(java.nio.file.Paths.get(args[1]));
+        long loadMs = (System.nanoTime() - t0) / 1_000_000L;
+
+        System.out.println("------------------------------------------------------------");
+        System.out.println("PUZZLE " + puzzle.size + "x" + puzzle.size + " (maxValue=" + puzzle.maxValue
+                + ", seed=" + puzzle.seed + ") desde " + args[1] + " en " + loadMs + " ms");
+        System.out.println("Fitness maximo teorico = " + FitnessEvaluator.getMaxFitness(puzzle.size));
+        runAlgorithms(puzzle.size, puzzle.set, puzzle.maxValue, puzzle.seed);
+    }
+
+    // cruces <size> <maxValue> <seed>: el genetico con OX y con EDGE sobre el mismo puzzle
+    static void compareCrossovers(String[] args) throws java.io.IOException {
+        int size = Integer.parseInt(args[1]);
+        int maxValue = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        PieceSet set = PieceSet.of(PuzzleGenerator.generateWithSolution(size, maxValue, seed));
+
+        System.out.println("PUZZLE " + size + "x" + size + " (maxValue=" + maxValue + ", seed=" + seed + ")");
+        System.out.println("Fitness maximo teorico = " + FitnessEvaluator.getMaxFitness(size));
+        Metrics ox = runGenetic(size, set, GeneticSolver.Crossover.OX);
+        Metrics edge = runGenetic(size, set, GeneticSolver.Crossover.EDGE);
+
+        System.out.println("\n>>> RESUMEN CRUCES (" + size + "x" + size + ")");
+        printMetrics("Genetico OX", ox);
+        printMetrics("Genetico EDGE", edge);
+
+        exportResults(List.of(tag(ox, "genetico_ox", size, maxValue, seed), tag(edge, "genetico_edge", size, maxValue, seed)));
+    }
+
+    // portafolio <size> <maxValue> <seed>: un puzzle con solucion, todos los motores a la vez
+    static void racePortfolio(String[] args) throws java.io.IOException {
+        int size = Integer.parseInt(args[1]);
+        int maxValue = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        PieceSet set = PieceSet.of(PuzzleGenerator.generateWithSolution(size, maxValue, seed));
+
+        System.out.println("PUZZLE " + size + "x" + size + " (maxValue=" + maxValue + ", seed=" + seed + ")");
+        System.out.println("Fitness maximo teorico = " + FitnessEvaluator.getMaxFitness(size));
+        Metrics race = runPortfolio(size, set);
+
+        System.out.println("\n>>> RESUMEN PORTAFOLIO (" + size + "x" + size + ")");
+        printMetrics("Portafolio", race);
+
+        exportResults(List.of(tag(race, "portafolio", size, maxValue, seed)));
+    }
+
+    // Tiempo = hasta la primera solucion completa (o hasta que todos se
+    // detuvieron, si nadie resolvio); CPU y memoria cuentan a todos los motores
+    static Metrics runPortfolio(int size, PieceSet set) {
+        System.out.println("\n--- PORTAFOLIO: todos los algoritmos a la vez (gana la primera solucion) ---");
+        Metrics m = new Metrics();
+
+        MemoryMeter memory = MemoryMeter.start();
+        long start = System.nanoTime();
 
-            System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
-            if (size <= 10) b.print();
-            else System.out.println("(Tablero omitido por tamano)");
+        Portfolio portfolio = new Portfolio(size, set, MAX_MS_PORTFOLIO);
+        boolean solved = portfolio.race();
 
-        } catch (StackOverflowError e) {
-            m.solved = false;
-            m.bestFitness = b.countMatches();
-            m.note = "StackOverflow";
-            System.out.println("Resultado: PARCIAL/NO (" + m.note + ")");
-            System.out.println("(El tamano excede la profundidad recursiva segura. Se continua con los demas.)");
+        long end = System.nanoTime();
+        memory.stop(m);
+
+        Portfolio.Entry best = portfolio.best();
+        m.solved = solved;
+        m.timeMs = ((solved ? portfolio.getFirstSolutionNano() : end) - start) / 1_000_000L;
+        m.comparisons = portfolio.getComparaciones();
+        m.assignments = portfolio.getAsignaciones();
+        m.bestFitness = best.fitness;
+        m.note = (solved ? "gano " : "sin solucion, mejor ") + best.name
+                + "; todos detenidos a los " + (end - start) / 1_000_000L + " ms";
+
+        for (Portfolio.Entry e : portfolio.getEntries()) {
+            System.out.println("[PORTAFOLIO] " + e.name + ": " + portfolio.status(e)
+                    + " a los " + e.timeMs + " ms (fitness " + e.fitness + ")");
         }
+        System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
+        printTablero(size, set, best.solver.getTablero());
 
         return m;
     }
 
-    static Metrics runFast(int size, List<Piece> pieces) {
-        System.out.println("\n--- ALGORITMO 2: AVANCE RAPIDO (Backtracking con candidatos) ---");
+    static Metrics runBruteForce(int size, PieceSet set) {
+        System.out.println("\n--- ALGORITMO 1: FUERZA BRUTA (Backtracking) ---");
         Metrics m = new Metrics();
 
-        if (size * size > MAX_CELLS_RECURSIVE) {
-            m.solved = false;
-            m.bestFitness = 0;
-            m.note = "omitido (riesgo StackOverflow)";
-            System.out.println("Resultado: PARCIAL/NO (" + m.note + ")");
-            System.out.println("(Se omite por profundidad recursiva: " + (size * size) + " llamadas aprox.)");
-            return m;
+        MemoryMeter memory = MemoryMeter.start();
+        long start = System.nanoTime();
+
+        FailCache cache = (SEARCH_FAIL_CACHE_SLOTS > 0) ? new FailCache(set, SEARCH_FAIL_CACHE_SLOTS) : null;
+        boolean solved;
+        CompactBoard tablero;
+        if (SEARCH_THREADS > 1) {
+            ParallelSearch solver = new ParallelSearch(size, set, false, SEARCH_SPLIT_DEPTH, MAX_MS_BRUTEFORCE);
+            solver.setForwardChecking(SEARCH_FORWARD_CHECK);
+            solver.setFailCache(cache);
+            solved = solver.solve(SEARCH_THREADS);
+            tablero = solver.getTablero();
+            m.comparisons = solver.getComparaciones();
+            m.assignments = solver.getAsignaciones();
+            m.note = (!solved && solver.isTimedOut()) ? "timeout" : "ok";
+        } else {
+            BruteForceSolver solver = new BruteForceSolver(size, set, MAX_MS_BRUTEFORCE);
+            solver.setForwardChecking(SEARCH_FORWARD_CHECK);
+            solver.setFailCache(cache);
+            solved = solver.solve();
+            tablero = solver.getTablero();
+            m.comparisons = solver.getComparaciones();
+            m.assignments = solver.getAsignaciones();
+            m.note = solver.isTimedOut() ? "timeout" : "ok";
         }
 
-        Board b = new Board(size);
+        long end = System.nanoTime();
+        memory.stop(m);
 
-        long memBefore = usedMemoryBytes();
-        long start = System.nanoTime();
+        m.solved = solved;
+        m.timeMs = (end - start) / 1_000_000L;
+        m.bestFitness = tablero.countMatches(set);
+
+        System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
+        if (cache != null) System.out.println("[CACHE] " + cache.stats());
+        printTablero(size, set, tablero);
+
+        return m;
+    }
 
-        try {
-            AvanceRapido solver = new AvanceRapido(b, pieces, MAX_MS_FAST);
-            boolean solved = solver.solve();
+    static Metrics runFast(int size, PieceSet set) {
+        System.out.println("\n--- ALGORITMO 2: AVANCE RAPIDO (Backtracking con candidatos"
+                + (FAST_MRV ? ", celda mas restringida primero" : "") + ") ---");
+        Metrics m = new Metrics();
 
-            long end = System.nanoTime();
-            long memAfter = usedMemoryBytes();
+        MemoryMeter memory = MemoryMeter.start();
+        long start = System.nanoTime();
 
-            m.solved = solved;
-            m.timeMs = (end - start) / 1_000_000L;
-            m.memoryBytes = Math.max(0, memAfter - memBefore);
+        FailCache cache = (SEARCH_FAIL_CACHE_SLOTS > 0) ? new FailCache(set, SEARCH_FAIL_CACHE_SLOTS) : null;
+        boolean solved;
+        CompactBoard tablero;
+        if (SEARCH_THREADS > 1) {
+            ParallelSearch.Motor motor = FAST_MRV ? ParallelSearch.Motor.AVANCE_RAPIDO_MRV : ParallelSearch.Motor.AVANCE_RAPIDO;
+            ParallelSearch solver = new ParallelSearch(size, set, motor, SEARCH_SPLIT_DEPTH, MAX_MS_FAST);
+            solver.setForwardChecking(SEARCH_FORWARD_CHECK);
+            solver.setFailCache(cache);
+            solved = solver.solve(SEARCH_THREADS);
+            tablero = solver.getTablero();
+            m.comparisons = solver.getComparaciones();
+            m.assignments = solver.getAsignaciones();
+            m.note = (!solved && solver.isTimedOut()) ? "timeout" : "ok";
+        } else if (FAST_MRV) {
+            AvanceRapidoMRV solver = new AvanceRapidoMRV(size, set, MAX_MS_FAST);
+            solved = solver.solve();
+            tablero = solver.getTablero();
+            m.comparisons = solver.getComparaciones();
+            m.assignments = solver.getAsignaciones();
+            m.note = solver.isTimedOut() ? "timeout" : "ok";
+        } else {
+            AvanceRapido solver = new AvanceRapido(size, set, MAX_MS_FAST);
+            solver.setForwardChecking(SEARCH_FORWARD_CHECK);
+            solver.setFailCache(cache);
+            solved = solver.solve();
+            tablero = solver.getTablero();
             m.comparisons = solver.getComparaciones();
             m.assignments = solver.getAsignaciones();
-            m.bestFitness = b.countMatches();
             m.note = solver.isTimedOut() ? "timeout" : "ok";
+        }
+
+        long end = System.nanoTime();
+        memory.stop(m);
+
+        m.solved = solved;
+        m.timeMs = (end - start) / 1_000_000L;
+        m.bestFitness = tablero.countMatches(set);
+
+        System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
+        if (cache != null) System.out.println("[CACHE] " + cache.stats());
+        printTablero(size, set, tablero);
 
-            System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
-            if (size <= 10) b.print();
-            else System.out.println("(Tablero omitido por tamano)");
+        return m;
+    }
 
-        } catch (StackOverflowError e) {
-            m.solved = false;
-            m.bestFitness = b.countMatches();
-            m.note = "StackOverflow";
-            System.out.println("Resultado: PARCIAL/NO (" + m.note + ")");
-            System.out.println("(El tamano excede la profundidad recursiva segura. Se continua con los demas.)");
+    // El Board (objetos Piece) solo se arma para imprimir tableros chicos
+    static void printTablero(int size, PieceSet set, CompactBoard tablero) {
+        if (size <= 10) {
+            Board b = new Board(size);
+            tablero.copyTo(b, set);
+            b.print();
+        } else {
+            System.out.println("(Tablero omitido por tamano)");
         }
+    }
+
+    static Metrics runRows(int size, PieceSet set) {
+        System.out.println("\n--- ALGORITMO 2b: AVANCE POR FILAS (filas validas precalculadas) ---");
+        Metrics m = new Metrics();
+
+        MemoryMeter memory = MemoryMeter.start();
+        long start = System.nanoTime();
+
+        AvancePorFilas solver = new AvancePorFilas(size, set, MAX_MS_FAST, ROW_BUDGET);
+        boolean solved = solver.solve();
+        CompactBoard tablero = solver.getTablero();
+
+        long end = System.nanoTime();
+        memory.stop(m);
+
+        m.solved = solved;
+        m.timeMs = (end - start) / 1_000_000L;
+        m.comparisons = solver.getComparaciones();
+        m.assignments = solver.getAsignaciones();
+        m.bestFitness = tablero.countMatches(set);
+        m.note = (!solved && solver.isTimedOut()) ? "timeout" : "ok";
+
+        System.out.println("Resultado: " + (solved ? "SOLUCION" : "PARCIAL/NO") + " (" + m.note + ")");
+        System.out.println("[FILAS] " + solver.memoStats());
+        printTablero(size, set, tablero);
 
         return m;
     }
 
-    static Metrics runGenetic(int size, List<Piece> pieces) {
+    static Metrics runGenetic(int size, PieceSet set) {
+        return runGenetic(size, set, GeneticSolver.Crossover.parse(GA_CROSSOVER));
+    }
+
+    static Metrics runGenetic(int size, PieceSet set, GeneticSolver.Crossover crossover) {
         System.out.println("\n--- ALGORITMO 3: GENETICO (Persona 3) ---");
 
         int pop = populationSizeFor(size);
         int kids = childrenCountFor(size);
-        System.out.println("[GENETIC] Poblacion inicial = " + pop + " | Hijos = " + kids + " | Generaciones = 10");
+        System.out.println("[GENETIC] Poblacion inicial = " + pop + " | Hijos = " + kids + " | Generaciones = " + GA_GENERATIONS
+                + " | Cruce = " + crossover);
+        if (GA_GREEDY_SEED > 0) {
+            System.out.println("[GENETIC] Semilla voraz: " + Math.round(Math.min(1.0, GA_GREEDY_SEED) * 100) + "% de la poblacion inicial");
+        }
+
+        if (GA_ISLANDS > 1) {
+            System.out.println("[GENETIC] Modelo de islas: " + GA_ISLANDS + " poblaciones, migracion cada "
+                    + GA_MIGRATION_INTERVAL + " generaciones (" + GA_MIGRANTS + " individuos, anillo)");
+            IslandGeneticSolver islands = new IslandGeneticSolver(size, set, GA_ISLANDS, pop, kids,
+                    MAX_MS_GENETIC, GA_MIGRATION_INTERVAL, GA_MIGRANTS, GA_PARALLEL_CHILDREN);
+            islands.setCrossover(crossover);
+            return islands.solveAndReport();
+        }
 
-        GeneticSolver solver = new GeneticSolver(size, pieces, pop, kids, MAX_MS_GENETIC);
+        GeneticSolver solver = new GeneticSolver(size, set, pop, kids, MAX_MS_GENETIC);
+        solver.setCrossover(crossover);
+        // con 1 hilo tambien: el mismo camino por pares da el mismo resultado
+        // que con N, asi la corrida no depende de la maquina
+        if (GA_PARALLEL_CHILDREN) {
+            System.out.println("[GENETIC] Hijos en paralelo con " + GA_THREADS + " hilos");
+            ForkJoinPool pool = MemoryMeter.newPool(GA_THREADS);
+            try {
+                solver.setPool(pool);
+                return solver.solveAndReport();
+            } finally {
+                pool.shutdown();
+            }
+        }
         return solver.solveAndReport();
     }
 
@@ -1139,9 +5835,23 @@ static class GeneticSolver {
         System.out.println("  - Solucion completa: " + (m.solved ? "Si" : "No"));
         System.out.println("  - Fitness logrado: " + m.bestFitness);
         System.out.println("  - Tiempo (ms): " + m.timeMs);
-        System.out.println("  - Memoria (bytes aprox): " + m.memoryBytes);
-        System.out.println("  - Comparaciones: " + m.comparisons);
-        System.out.println("  - Asignaciones: " + m.assignments);
+        System.out.println("  - Tiempo de CPU (ms): " + m.cpuTimeMs);
+        System.out.println("  - Fitness por segundo de CPU: " + String.format(Locale.ROOT, "%.1f",
+                m.bestFitness * 1000.0 / Math.max(1, m.cpuTimeMs)));
+        System.out.println("  - Memoria asignada (bytes): " + m.allocatedBytes);
+        System.out.println("  - Pico de heap (bytes): " + m.peakHeapBytes);
+        System.out.println("  - GC: " + m.gcCount + " colecciones, " + m.gcTimeMs + " ms");
+        if (Counters.ON) {
+            String aprox = Counters.SAMPLED ? "~" : "";
+            System.out.println("  - Comparaciones: " + aprox + m.comparisons);
+            System.out.println("  - Asignaciones: " + aprox + m.assignments);
+        } else {
+            System.out.println("  - Comparaciones/Asignaciones: (contadores " + Counters.describe() + ")");
+        }
         System.out.println("  - Nota: " + (m.note == null ? "" : m.note));
+        if (m.trace != null) {
+            System.out.println("  - Generaciones: " + m.trace.getGenerations() + " (parada: " + m.trace.getStop() + ")");
+            System.out.println("  - Traza ms:fitness: " + m.trace.points(20));
+        }
     }
 }